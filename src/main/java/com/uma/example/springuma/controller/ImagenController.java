@@ -2,40 +2,245 @@ package com.uma.example.springuma.controller;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uma.example.springuma.model.DerivadoService;
 import com.uma.example.springuma.model.Imagen;
+import com.uma.example.springuma.model.ImagenInfo;
 import com.uma.example.springuma.model.ImagenService;
 import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.Pagina;
+import com.uma.example.springuma.model.PrediccionNoDisponibleException;
+import com.uma.example.springuma.model.PrediccionLoteService;
+import com.uma.example.springuma.utils.ImageCodec;
+import com.uma.example.springuma.utils.ZipWriter;
 
 @RestController
 public class ImagenController {
     @Autowired
     private ImagenService imagenService;
 
+    @Autowired
+    private PrediccionLoteService prediccionLoteService;
+
+    @Autowired
+    private DerivadoService derivadoService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
 	@GetMapping("/imagen/{id}")
-	public ResponseEntity<?> downloadImage(@PathVariable long id){
-		byte[] imageData=imagenService.downloadImage(id);
+	public ResponseEntity<StreamingResponseBody> downloadImage(@PathVariable long id,
+            @RequestHeader HttpHeaders requestHeaders, ServletWebRequest webRequest) throws IOException {
+		Imagen imagen = imagenService.findImagen(id);
+		if (imagen == null) {
+			return ResponseEntity.notFound().build();
+		}
+		long lastModified = imagen.getFecha() != null ? imagen.getFecha().getTimeInMillis() / 1000 * 1000 : -1;
+		// Las imágenes DEFLATE se guardan en formato zlib, que es justo lo que HTTP llama "deflate":
+		// si el cliente lo acepta y no pide un rango se envía el blob tal cual, sin descomprimir en el servidor
+		boolean deflate = imagen.getCodec() == ImageCodec.DEFLATE
+			&& requestHeaders.getFirst(HttpHeaders.RANGE) == null && acceptsDeflate(requestHeaders);
+		// El contenido de una imagen no cambia nunca, así que el hash sirve de ETag fuerte;
+		// la versión codificada es otra representación y lleva su propia ETag
+		String etag = "\"" + imagen.getContentHash() + (deflate ? "-deflate" : "") + "\"";
+
+		// checkNotModified ya añade ETag y Last-Modified a la respuesta, tanto si es 304 como si no
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable());
+		if (imagen.getCodec() == ImageCodec.DEFLATE) {
+			headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+		}
+		// If-None-Match / If-Modified-Since se resuelven solo con los metadatos, sin abrir el blob
+		if (webRequest.checkNotModified(etag, lastModified)) {
+			return ResponseEntity.status(webRequest.getResponse().getStatus()).headers(headers).build();
+		}
+
+		headers.setContentType(imagen.getFormato() != null
+			? MediaType.valueOf(imagen.getFormato().getMediaType()) : MediaType.IMAGE_PNG);
+		headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+		if (deflate) {
+			headers.set(HttpHeaders.CONTENT_ENCODING, "deflate");
+			headers.setContentLength(imagenService.getStoredSize(imagen));
+			return ResponseEntity.ok().headers(headers)
+				.body(out -> imagenService.downloadStored(imagen, out));
+		}
+		long size = imagenService.getImageSize(imagen);
+
+		// Solo se atiende un único rango; con varios rangos o un If-Range que no coincide se envía la imagen completa
+		List<HttpRange> ranges;
+		try {
+			ranges = HttpRange.parseRanges(requestHeaders.getFirst(HttpHeaders.RANGE));
+		} catch (IllegalArgumentException e) {
+			return rangeNotSatisfiable(size);
+		}
+		if (ranges.size() == 1 && ifRangeMatches(requestHeaders, etag, lastModified)) {
+			long start = ranges.get(0).getRangeStart(size);
+			if (start >= size) {
+				return rangeNotSatisfiable(size);
+			}
+			long end = ranges.get(0).getRangeEnd(size);
+			long length = end - start + 1;
+			headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+			headers.setContentLength(length);
+			return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers)
+				.body(out -> imagenService.downloadImage(imagen, start, length, out));
+		}
+		headers.setContentLength(size);
+		return ResponseEntity.ok().headers(headers)
+			.body(out -> imagenService.downloadImage(imagen, 0, size, out));
+	}
+
+	// Miniatura en JPEG. Cada derivado se guarda por hash del contenido y nunca cambia, así que se puede cachear un año
+	@GetMapping("/imagen/{id}/thumbnail")
+	public ResponseEntity<StreamingResponseBody> downloadThumbnail(@PathVariable long id,
+            @RequestParam(value = "size", required = false) Integer size) throws IOException {
+		int ancho = size != null ? size : derivadoService.getTamanoPorDefecto();
+		if (!derivadoService.isTamanoValido(ancho)) {
+			return ResponseEntity.badRequest().build();
+		}
+		Imagen imagen = imagenService.findImagen(id);
+		if (imagen == null) {
+			return ResponseEntity.notFound().build();
+		}
+		String clave = imagenService.getDerivado(imagen, ancho);
+		if (clave == null) {
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok()
+			.contentType(MediaType.IMAGE_JPEG)
+			.contentLength(derivadoService.size(clave))
+			.cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+			.body(out -> derivadoService.write(clave, out));
+	}
+
+	// Todas las imágenes de un paciente en un ZIP. Las comprimidas se copian con sus bytes deflate guardados,
+	// sin recomprimir, y como los tamaños se conocen de antemano la respuesta lleva Content-Length
+	@GetMapping("/paciente/{id}/imagenes.zip")
+	public ResponseEntity<StreamingResponseBody> downloadZip(@PathVariable long id) throws IOException {
+		List<ZipWriter.Entrada> entradas = imagenService.getEntradasZip(id);
+		if (entradas.isEmpty()) {
+			return ResponseEntity.notFound().build();
+		}
 		return ResponseEntity.ok()
-        .contentType(MediaType.valueOf(
-            "image/png"
-        ))
-        .body(imageData);
+			.contentType(MediaType.valueOf("application/zip"))
+			.contentLength(ZipWriter.longitud(entradas))
+			.header(HttpHeaders.CONTENT_DISPOSITION,
+				ContentDisposition.attachment().filename("paciente-" + id + "-imagenes.zip").build().toString())
+			.body(out -> ZipWriter.escribir(entradas, out));
+	}
+
+	private static boolean acceptsDeflate(HttpHeaders requestHeaders) {
+		for (String value : requestHeaders.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+			for (String coding : value.split(",")) {
+				String[] params = coding.split(";");
+				if (!"deflate".equalsIgnoreCase(params[0].trim())) {
+					continue;
+				}
+				for (int i = 1; i < params.length; i++) {
+					String param = params[i].trim();
+					if (param.startsWith("q=")) {
+						try {
+							return Double.parseDouble(param.substring(2)) > 0;
+						} catch (NumberFormatException e) {
+							return false;
+						}
+					}
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean ifRangeMatches(HttpHeaders requestHeaders, String etag, long lastModified) {
+		String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+		if (ifRange == null) {
+			return true;
+		}
+		// If-Range exige comparación fuerte: una ETag débil nunca coincide
+		if (ifRange.startsWith("W/")) {
+			return false;
+		}
+		if (ifRange.startsWith("\"")) {
+			return ifRange.equals(etag);
+		}
+		try {
+			return lastModified >= 0 && requestHeaders.getFirstDate(HttpHeaders.IF_RANGE) == lastModified;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private static ResponseEntity<StreamingResponseBody> rangeNotSatisfiable(long size) {
+		return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+			.header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+			.build();
 	}
 
     @GetMapping("/imagen/info/{id}")
-    public Imagen getImagen(@PathVariable("id") Long id){
-        return imagenService.getImagen(id);
+    public ResponseEntity<ImagenInfo> getImagen(@PathVariable("id") Long id){
+        ImagenInfo imagen = imagenService.getImagenInfo(id);
+        if (imagen != null) {
+            return ResponseEntity.ok(imagen);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Predicción de todas las imágenes de un paciente o de una lista de ids. La respuesta es NDJSON:
+    // una línea por imagen en el orden en que van terminando, con su predicción o su error
+    @GetMapping(value = "/imagen/paciente/{id}/predict", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> getPrediccionesPaciente(@PathVariable("id") Long id) {
+        return prediccionesLote(prediccionLoteService.getIdsPaciente(id));
+    }
+
+    @PostMapping(value = "/imagen/predict", consumes = MediaType.APPLICATION_JSON_VALUE, produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> getPrediccionesLote(@RequestBody List<Long> ids) {
+        // Un id nulo se rechaza antes de empezar a responder: después ya no se puede cambiar el código de estado
+        if (ids.contains(null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return prediccionesLote(ids);
+    }
+
+    private ResponseEntity<StreamingResponseBody> prediccionesLote(List<Long> ids) {
+        if (ids.size() > prediccionLoteService.getMaxImagenes()) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!prediccionLoteService.admite(ids.size())) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").build();
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.valueOf("application/x-ndjson"))
+            .body(out -> prediccionLoteService.predecir(ids, resultado -> {
+                objectMapper.writeValue(StreamUtils.nonClosing(out), resultado);
+                out.write('\n');
+                out.flush();
+            }));
     }
 
     @GetMapping("/imagen/predict/{id}")
@@ -43,6 +248,9 @@ public class ImagenController {
         try{
             return ResponseEntity.ok("{\"prediction\": \""+imagenService.getNewPrediccion(id)+"\"}");
         }
+        catch(PrediccionNoDisponibleException e){
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").body(e.getMessage());
+        }
         catch(Exception e){
             e.printStackTrace();
             return ResponseEntity.internalServerError().body("Error al realizar la prediccion"+e.getMessage());
@@ -58,8 +266,15 @@ public class ImagenController {
 	}
 
     @GetMapping("/imagen/paciente/{id}")
-    public List<Imagen> getImagenes (@PathVariable("id") Long id) {
-        return imagenService.getImagenesPaciente(id);
+    public ResponseEntity<List<ImagenInfo>> getImagenes (@PathVariable("id") Long id,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        try{
+            return Paginas.respuesta(imagenService.getImagenesPaciente(id, cursor, Pagina.tamano(size)));
+        }
+        catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @DeleteMapping("/imagen/{id}")
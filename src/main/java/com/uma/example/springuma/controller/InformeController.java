@@ -1,9 +1,12 @@
 package com.uma.example.springuma.controller;
 
+import java.net.URI;
 import java.util.List;
 
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -11,34 +14,83 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.uma.example.springuma.model.ExportacionService;
 import com.uma.example.springuma.model.Informe;
 import com.uma.example.springuma.model.InformeService;
+import com.uma.example.springuma.model.Pagina;
+import com.uma.example.springuma.model.PrediccionNoDisponibleException;
+import com.uma.example.springuma.model.TareaPrediccion;
+import com.uma.example.springuma.model.TareaPrediccionService;
 
 @RestController
 public class InformeController {
     
     @Autowired
     private InformeService informeService;
+
+    @Autowired
+    private ExportacionService exportacionService;
+
+    @Autowired
+    private TareaPrediccionService tareaPrediccionService;
     
     @GetMapping("/informe/{id}")
     public Informe getInforme(@PathVariable("id") Long id) {
         return informeService.getInforme(id);
     }
 
+    // Exportación completa en NDJSON, escrita según se lee de la base de datos
+    @GetMapping(value = "/informe/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportInformes() {
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(out -> exportacionService.exportarInformes(out));
+    }
+
+    @GetMapping("/informe/{id}/estado")
+    public ResponseEntity<TareaPrediccion> getEstadoPrediccion(@PathVariable("id") Long id) {
+        TareaPrediccion tarea = tareaPrediccionService.getTareaInforme(id);
+        if (tarea != null) {
+            return ResponseEntity.ok(tarea);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @GetMapping("informe/imagen/{id}")
-    public List<Informe> getInformes(@PathVariable("id") Long id) {
-        return informeService.getInformesImagen(id);
+    public ResponseEntity<List<Informe>> getInformes(@PathVariable("id") Long id,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        try{
+            return Paginas.respuesta(informeService.getInformesImagen(id, cursor, Pagina.tamano(size)));
+        }
+        catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     
+    // Con async=true el informe se guarda sin esperar a la predicción y se responde 202 con la URL de estado
     @PostMapping(value = "/informe",     consumes = {MediaType.APPLICATION_JSON_VALUE} )
-	public ResponseEntity<?> saveInforme(@RequestBody Informe informe) {
+	public ResponseEntity<?> saveInforme(@RequestBody Informe informe,
+            @RequestParam(value = "async", defaultValue = "false") boolean async) {
         try{
+            if (async) {
+                Informe saved = informeService.addInformeAsync(informe);
+                return ResponseEntity.accepted()
+                    .location(URI.create("/informe/" + saved.getId() + "/estado"))
+                    .body("{\"id\": " + saved.getId() + ", \"estado\": \"/informe/" + saved.getId() + "/estado\"}");
+            }
             informeService.addInforme(informe);
             return ResponseEntity.status(201).build();
         }
+        catch(PrediccionNoDisponibleException e){
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").body(e.getMessage());
+        }
         catch(Exception e){
             e.printStackTrace();
             return ResponseEntity.internalServerError().body("El informe ya existe");
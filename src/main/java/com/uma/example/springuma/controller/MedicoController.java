@@ -1,7 +1,10 @@
 package com.uma.example.springuma.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -10,8 +13,10 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.uma.example.springuma.model.ImportacionService;
 import com.uma.example.springuma.model.Medico;
 import com.uma.example.springuma.model.MedicoService;
 
@@ -21,6 +26,9 @@ public class MedicoController {
     @Autowired
     private MedicoService medicoService;
 
+    @Autowired
+    private ImportacionService importacionService;
+
     @GetMapping("/medico/{id}")
     public Medico getMedico(@PathVariable("id") Long id){
         return medicoService.getMedico(id);
@@ -37,6 +45,24 @@ public class MedicoController {
         }
 	}
 
+    // Alta masiva desde CSV con cabecera o NDJSON. El cuerpo se procesa sin cargarlo entero en memoria
+    // y se responde con el número de filas importadas y el motivo de cada fila rechazada
+    @PostMapping(value = "/medico/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> importMedicos(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body) {
+        ImportacionService.Formato formato = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+            ? ImportacionService.Formato.NDJSON : ImportacionService.Formato.CSV;
+        try{
+            return ResponseEntity.ok(importacionService.importarMedicos(body, formato));
+        }
+        catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        catch(IOException e){
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().body("Error al leer el fichero");
+        }
+    }
+
     @PutMapping(value = "/medico",     consumes = {MediaType.APPLICATION_JSON_VALUE} )
     public ResponseEntity<?> updateMedico (@RequestBody Medico medico) {
         try{
@@ -1,8 +1,11 @@
 package com.uma.example.springuma.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -11,8 +14,14 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.uma.example.springuma.model.ExportacionService;
+import com.uma.example.springuma.model.ImportacionService;
+import com.uma.example.springuma.model.Pagina;
 import com.uma.example.springuma.model.Paciente;
 import com.uma.example.springuma.model.PacienteService;
 
@@ -21,15 +30,36 @@ public class PacienteController {
     
     @Autowired
     private PacienteService pacienteService;
+
+    @Autowired
+    private ExportacionService exportacionService;
+
+    @Autowired
+    private ImportacionService importacionService;
     
     @GetMapping("/paciente/{id}")
     public Paciente getPaciente(@PathVariable("id") Long id) {
         return pacienteService.getPaciente(id);
     }
 
+    // Exportación completa en NDJSON, escrita según se lee de la base de datos
+    @GetMapping(value = "/paciente/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportPacientes() {
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(out -> exportacionService.exportarPacientes(out));
+    }
+
     @GetMapping("/paciente/medico/{id}")
-    public List<Paciente> getPacientes(@PathVariable("id") Long id) {
-        return pacienteService.getPacientesMedico(id);
+    public ResponseEntity<List<Paciente>> getPacientes(@PathVariable("id") Long id,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        try{
+            return Paginas.respuesta(pacienteService.getPacientesMedico(id, cursor, Pagina.tamano(size)));
+        }
+        catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @PostMapping(value = "/paciente",     consumes = {MediaType.APPLICATION_JSON_VALUE} )
@@ -43,6 +73,24 @@ public class PacienteController {
         }
 	}
 
+    // Alta masiva desde CSV con cabecera o NDJSON. El cuerpo se procesa sin cargarlo entero en memoria
+    // y se responde con el número de filas importadas y el motivo de cada fila rechazada
+    @PostMapping(value = "/paciente/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> importPacientes(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body) {
+        ImportacionService.Formato formato = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+            ? ImportacionService.Formato.NDJSON : ImportacionService.Formato.CSV;
+        try{
+            return ResponseEntity.ok(importacionService.importarPacientes(body, formato));
+        }
+        catch(IllegalArgumentException e){
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        catch(IOException e){
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().body("Error al leer el fichero");
+        }
+    }
+
     @PutMapping(value = "/paciente",     consumes = {MediaType.APPLICATION_JSON_VALUE} )
     public ResponseEntity<?> updateCuenta (@RequestBody Paciente paciente) {
         try{
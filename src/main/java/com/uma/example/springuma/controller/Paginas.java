@@ -0,0 +1,28 @@
+package com.uma.example.springuma.controller;
+
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.uma.example.springuma.model.Pagina;
+
+// Los listados devuelven un array JSON con los elementos de la página y, si hay más, una cabecera
+// Link rel="next" con la misma URL y el cursor de la página siguiente
+final class Paginas {
+
+    private Paginas() {
+    }
+
+    static <T> ResponseEntity<List<T>> respuesta(Pagina<T> pagina) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (pagina.nextCursor() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("cursor", pagina.nextCursor())
+                .toUriString();
+            builder.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return builder.body(pagina.items());
+    }
+}
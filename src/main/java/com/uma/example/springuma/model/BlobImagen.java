@@ -0,0 +1,7 @@
+package com.uma.example.springuma.model;
+
+import com.uma.example.springuma.utils.ImageCodec;
+
+// Blob al que apunta una imagen: el mismo contenido puede estar guardado con distintos codecs
+public record BlobImagen(String contentHash, ImageCodec codec) {
+}
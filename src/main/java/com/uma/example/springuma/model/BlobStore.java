@@ -0,0 +1,32 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+// Almacén del contenido binario de las imágenes. Cada blob se identifica por una clave
+// (el hash SHA-256 del contenido original), de forma que en la tabla imagen solo se guardan metadatos
+public interface BlobStore {
+
+    // Fichero temporal en el propio almacén en el que escribir un blob antes de conocer su clave
+    Path createTempFile() throws IOException;
+
+    // Mueve el fichero temporal a su ubicación definitiva; si la clave ya existe se descarta el temporal
+    void put(String key, Path temp) throws IOException;
+
+    boolean exists(String key);
+
+    long size(String key) throws IOException;
+
+    InputStream open(String key) throws IOException;
+
+    // Vista de solo lectura proyectada en memoria, sin copiar el blob al heap
+    ByteBuffer map(String key) throws IOException;
+
+    // Copia [position, position + count) del blob al canal destino usando transferTo (zero-copy)
+    long transferTo(String key, long position, long count, WritableByteChannel target) throws IOException;
+
+    void delete(String key) throws IOException;
+}
@@ -0,0 +1,155 @@
+package com.uma.example.springuma.model;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Miniaturas y vistas previas de las imágenes en JPEG, a los anchos de imagen.derivados.tamanos.
+// Se guardan en el BlobStore junto a la original con clave <hash>_w<ancho>; se generan en segundo plano
+// al subir la imagen y, si todavía no existen (o la cola estaba llena), la primera vez que se piden
+@Service
+public class DerivadoService {
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${imagen.derivados.tamanos:128,512}")
+    private int[] tamanos;
+
+    @Value("${imagen.derivados.hilos:2}")
+    private int hilos;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        Arrays.sort(tamanos);
+        // Si la cola se llena se descarta la tarea: el derivado se generará cuando se pida
+        executor = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(100), new CustomizableThreadFactory("derivados-"),
+            new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public boolean isTamanoValido(int ancho) {
+        return Arrays.binarySearch(tamanos, ancho) >= 0;
+    }
+
+    public int getTamanoPorDefecto() {
+        return tamanos[0];
+    }
+
+    static String clave(String contentHash, int ancho) {
+        return contentHash + "_w" + ancho;
+    }
+
+    public void generarEnSegundoPlano(String contentHash, OrigenImagen origen) {
+        executor.execute(() -> {
+            try {
+                generar(contentHash, origen, "subida");
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    // Clave del derivado del ancho pedido, generándolo si hace falta. Devuelve null si ImageIO
+    // no sabe decodificar la imagen original (por ejemplo DICOM)
+    public String obtener(String contentHash, int ancho, OrigenImagen origen) throws IOException {
+        String clave = clave(contentHash, ancho);
+        if (blobStore.exists(clave)) {
+            return clave;
+        }
+        return generar(contentHash, origen, "peticion") ? clave : null;
+    }
+
+    // Genera todos los tamaños que falten a partir de una única decodificación de la original
+    private boolean generar(String contentHash, OrigenImagen origen, String motivo) throws IOException {
+        boolean pendientes = false;
+        for (int ancho : tamanos) {
+            pendientes |= !blobStore.exists(clave(contentHash, ancho));
+        }
+        if (!pendientes) {
+            return true;
+        }
+        BufferedImage original = ImageIO.read(new ByteArrayInputStream(origen.leer()));
+        if (original == null) {
+            return false;
+        }
+        for (int ancho : tamanos) {
+            String clave = clave(contentHash, ancho);
+            if (!blobStore.exists(clave)) {
+                guardar(clave, escalar(original, ancho));
+                meterRegistry.counter("imagen.derivados.generados", "motivo", motivo).increment();
+            }
+        }
+        return true;
+    }
+
+    // Nunca se amplía: si la original es más estrecha que el ancho pedido se conserva su tamaño
+    private static BufferedImage escalar(BufferedImage original, int ancho) {
+        int width = Math.min(ancho, original.getWidth());
+        int height = Math.max(1, (int) Math.round((double) original.getHeight() * width / original.getWidth()));
+        BufferedImage escalada = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = escalada.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(original, 0, 0, width, height, null);
+        g.dispose();
+        return escalada;
+    }
+
+    private void guardar(String clave, BufferedImage imagen) throws IOException {
+        Path temp = blobStore.createTempFile();
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                ImageIO.write(imagen, "jpg", out);
+            }
+            blobStore.put(clave, temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public long size(String clave) throws IOException {
+        return blobStore.size(clave);
+    }
+
+    public void write(String clave, OutputStream out) throws IOException {
+        blobStore.transferTo(clave, 0, blobStore.size(clave), Channels.newChannel(out));
+    }
+
+    public void delete(String contentHash) throws IOException {
+        for (int ancho : tamanos) {
+            blobStore.delete(clave(contentHash, ancho));
+        }
+    }
+}
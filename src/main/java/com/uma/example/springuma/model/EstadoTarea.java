@@ -0,0 +1,8 @@
+package com.uma.example.springuma.model;
+
+public enum EstadoTarea {
+    PENDIENTE,
+    EN_CURSO,
+    COMPLETADA,
+    FALLIDA
+}
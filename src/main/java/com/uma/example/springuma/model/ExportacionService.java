@@ -0,0 +1,81 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+// Exportación completa de informes y pacientes en NDJSON (un objeto JSON por línea, igual que en los GET).
+// Las filas se leen con un cursor y se escriben según llegan con un único generador JSON; la salida solo se vacía
+// cada exportacion.lote filas, momento en el que también se sueltan las entidades ya escritas, así que la memoria
+// no depende del tamaño de la tabla
+@Service
+public class ExportacionService {
+
+    @Autowired
+    private RepositoryInforme repositoryInforme;
+
+    @Autowired
+    private RepositoryPaciente repositoryPaciente;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${exportacion.lote:500}")
+    private int tamanoLote;
+
+    // La transacción mantiene abierta la conexión mientras se recorre el cursor
+    @Transactional(readOnly = true)
+    public void exportarInformes(OutputStream out) throws IOException {
+        escribir("informe", repositoryInforme.streamAllByOrderById(), out);
+    }
+
+    @Transactional(readOnly = true)
+    public void exportarPacientes(OutputStream out) throws IOException {
+        escribir("paciente", repositoryPaciente.streamAllByOrderById(), out);
+    }
+
+    private <T> void escribir(String entidad, Stream<T> filas, OutputStream out) throws IOException {
+        long escritas = 0;
+        // Sin FLUSH_AFTER_WRITE_VALUE, que vaciaría la salida (un trozo de la respuesta) en cada fila
+        try (filas; SequenceWriter secuencia = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n")
+                .writeValues(StreamUtils.nonClosing(out))) {
+            Iterator<T> it = filas.iterator();
+            while (it.hasNext()) {
+                secuencia.write(it.next());
+                if (++escritas % tamanoLote == 0) {
+                    secuencia.flush();
+                    entityManager.clear();
+                }
+            }
+        }
+        // El separador solo va entre filas; en NDJSON la última también acaba en salto de línea
+        if (escritas > 0) {
+            out.write('\n');
+        }
+        out.flush();
+        meterRegistry.counter("exportacion.filas", "entidad", entidad).increment(escritas);
+    }
+}
@@ -6,46 +6,112 @@ import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.uma.example.springuma.utils.ImageCodec;
+import com.uma.example.springuma.utils.ImageFormat;
 
 import jakarta.persistence.*;
 
 @Entity
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"}) // para ignorar el serializador al devolver un objeto cuenta
+// Las imágenes de un paciente se listan por (fecha, id); el hash se consulta al liberar un blob compartido
+@Table(indexes = {
+    @Index(name = "idx_imagen_paciente_fecha", columnList = "paciente_id, fecha, id"),
+    @Index(name = "idx_imagen_content_hash", columnList = "content_hash")})
 public class Imagen {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "imagen_seq")
+    @SequenceGenerator(name = "imagen_seq", sequenceName = "imagen_seq", allocationSize = 50)
     private long id;
 
     @Column(name = "nombre")
     private String nombre;
 
-    @Column(name = "fecha")
+    // Obligatoria: los listados se paginan por (fecha, id) y el cursor la lleva
+    @Column(name = "fecha", nullable = false)
     private Calendar fecha;
 
     public Calendar getFecha() {
         return fecha;
     }
 
+    // Una imagen guardada sin fecha toma la del momento en que se guarda
+    @PrePersist
+    @PreUpdate
+    void fechaPorDefecto() {
+        if (fecha == null) {
+            fecha = Calendar.getInstance();
+        }
+    }
+
     public void setFecha(Calendar fecha) {
         this.fecha = fecha;
     }
     // Relación con Paciente (muchas imágenes pueden pertenecer a un paciente)
-    @ManyToOne()
+    @ManyToOne(fetch = FetchType.LAZY)
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "paciente_id")
     private Paciente paciente;
 
-    @Lob
-    @Column(name = "file_content")
-    private byte[] file_content;
+    // El contenido se guarda en el BlobStore; aquí solo queda su hash SHA-256, que hace de clave
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
 
-    public byte[] getFile_content(){
-         return file_content;
-     }
+    // Tamaño de la imagen descomprimida, necesario para responder a peticiones Range
+    @Column(name = "file_size")
+    private Long size;
 
-     public void setFile_content(byte[] file_content){
-         this.file_content = file_content;
-}
+    // CRC-32 de la imagen descomprimida, el que necesita cada entrada del ZIP de exportación
+    @Column(name = "crc32")
+    private Long crc;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "formato", length = 16)
+    private ImageFormat formato;
+
+    // Codec con el que está guardado el blob; las imágenes anteriores a este campo están en deflate
+    @Enumerated(EnumType.STRING)
+    @Column(name = "codec", length = 16)
+    private ImageCodec codec;
+
+    public ImageFormat getFormato() {
+        return formato;
+    }
+
+    public void setFormato(ImageFormat formato) {
+        this.formato = formato;
+    }
+
+    public ImageCodec getCodec() {
+        return codec != null ? codec : ImageCodec.DEFLATE;
+    }
+
+    public void setCodec(ImageCodec codec) {
+        this.codec = codec;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Long getCrc() {
+        return crc;
+    }
+
+    public void setCrc(Long crc) {
+        this.crc = crc;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
 
     // Constructor vacío
     public Imagen() {
@@ -94,9 +160,9 @@ public class Imagen {
                 ", paciente=" + paciente +
                 '}';
     }
-    public Imagen(byte[] file_content, Paciente paciente)
+    public Imagen(String contentHash, Paciente paciente)
     {
-        this.file_content = file_content;
+        this.contentHash = contentHash;
         this.paciente = paciente;
     }
 
@@ -0,0 +1,95 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.uma.example.springuma.utils.ImageUtils;
+
+// Al arrancar mueve al BlobStore las imágenes que todavía están en la antigua columna file_content
+// y, cuando no queda ninguna, elimina la columna para que la base de datos recupere ese espacio.
+// Corre en cuanto están creados todos los beans (Flyway ya ha migrado el esquema) y antes de que Tomcat
+// acepte conexiones: mientras quede alguna fila sin content_hash, pedir esa imagen fallaría
+@Component
+public class ImagenBlobMigration implements SmartInitializingSingleton {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            migrate();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void migrate() throws IOException {
+        if (!legacyColumnExists()) {
+            return;
+        }
+        List<Long> ids = jdbcTemplate.queryForList("select id from imagen where file_content is not null", Long.class);
+        for (Long id : ids) {
+            migrate(id);
+        }
+        Long pending = jdbcTemplate.queryForObject("select count(*) from imagen where file_content is not null", Long.class);
+        if (pending != null && pending == 0) {
+            jdbcTemplate.execute("alter table imagen drop column file_content");
+        }
+    }
+
+    private boolean legacyColumnExists() {
+        Long count = jdbcTemplate.queryForObject(
+            "select count(*) from information_schema.columns where upper(table_name) = 'IMAGEN' and upper(column_name) = 'FILE_CONTENT'",
+            Long.class);
+        return count != null && count > 0;
+    }
+
+    private void migrate(long id) throws IOException {
+        Path compressed = blobStore.createTempFile();
+        try {
+            // El LOB ya está comprimido, se copia tal cual al fichero temporal
+            jdbcTemplate.query("select file_content from imagen where id = ?", rs -> {
+                try (InputStream in = rs.getBinaryStream(1)) {
+                    Files.copy(in, compressed, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, id);
+
+            // El hash y el tamaño se calculan sobre la imagen original, igual que en una subida nueva
+            MessageDigest digest = ImagenService.sha256();
+            long size;
+            try (InputStream in = Files.newInputStream(compressed);
+                 OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+                size = ImageUtils.decompressImage(in, out, 0, Long.MAX_VALUE);
+            }
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+            blobStore.put(contentHash, compressed);
+
+            jdbcTemplate.update("update imagen set content_hash = ?, file_size = ?, codec = 'DEFLATE', file_content = null where id = ?",
+                contentHash, size, id);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            Files.deleteIfExists(compressed);
+        }
+    }
+}
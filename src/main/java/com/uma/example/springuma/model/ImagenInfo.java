@@ -0,0 +1,7 @@
+package com.uma.example.springuma.model;
+
+import java.util.Calendar;
+
+// Metadatos de una imagen para listados: se consultan sin cargar la entidad ni su paciente y médico
+public record ImagenInfo(long id, String nombre, Calendar fecha, Long size, String contentHash, Long pacienteId) {
+}
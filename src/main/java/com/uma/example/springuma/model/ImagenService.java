@@ -1,15 +1,59 @@
 package com.uma.example.springuma.model;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.uma.example.springuma.utils.Cursor;
+import com.uma.example.springuma.utils.ImageCodec;
+import com.uma.example.springuma.utils.ImageFormat;
 import com.uma.example.springuma.utils.ImageUtils;
+import com.uma.example.springuma.utils.ZipWriter;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 @Service
 public class ImagenService {
@@ -17,23 +61,129 @@ public class ImagenService {
     @Autowired
     private RepositoryImagen repositoryImagen;
 
-    public List<Imagen> getAllImagenes() {
-        return repositoryImagen.findAll();
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PrediccionCache prediccionCache;
+
+    @Autowired
+    private Predictor predictor;
+
+    @Autowired
+    private ProteccionPredictor proteccionPredictor;
+
+    @Autowired
+    private PreprocesadorImagen preprocesadorImagen;
+
+    @Autowired
+    private DerivadoService derivadoService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Lo que espera una petición a la predicción en curso del mismo contenido; debe cubrir lo que puede
+    // tardar el modelo, incluidos los tiempos de espera del cliente HTTP
+    @Value("${prediccion.coalescencia.espera:PT2M}")
+    private Duration esperaCoalescencia;
+
+    private final ConcurrentMap<String, CompletableFuture<String>> prediccionesEnCurso = new ConcurrentHashMap<>();
+    private Counter prediccionesCoalescidas;
+
+    // Cerrojos por hash de contenido, repartidos en franjas. Una subida lo mantiene desde que deja el blob
+    // en el BlobStore hasta que su transacción termina, y el borrado mientras comprueba si el blob sigue
+    // referenciado y lo elimina, así que nunca se borra un blob que una subida en curso va a referenciar
+    private final Lock[] cerrojosBlob = new Lock[64];
+
+    // Comprobación de referencias en su propia transacción, también cuando se hace tras confirmar otra
+    private TransactionTemplate consultaReferencias;
+
+    @PostConstruct
+    void init() {
+        prediccionesCoalescidas = meterRegistry.counter("prediccion.coalescidas");
+        meterRegistry.gaugeMapSize("prediccion.en_curso", Tags.empty(), prediccionesEnCurso);
+        for (int i = 0; i < cerrojosBlob.length; i++) {
+            cerrojosBlob[i] = new ReentrantLock();
+        }
+        consultaReferencias = new TransactionTemplate(transactionManager);
+        consultaReferencias.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        consultaReferencias.setReadOnly(true);
+    }
+
+    public Pagina<Imagen> getAllImagenes(String cursor, int tamano) {
+        return Pagina.of(repositoryImagen.findByIdGreaterThanOrderById(Pagina.despuesDe(cursor), Pagina.limite(tamano)),
+            tamano, i -> Cursor.encode(i.getId()));
     }
 
     public Imagen getImagen(Long id) {
         return repositoryImagen.getReferenceById(id);
     }
 
+    public ImagenInfo getImagenInfo(Long id) {
+        return repositoryImagen.findInfoById(id).orElse(null);
+    }
+
+    public Imagen findImagen(Long id) {
+        return repositoryImagen.findById(id).orElse(null);
+    }
+
+    // Las predicciones se guardan por hash del contenido y modelo, así que repetir la predicción
+    // de una imagen ya evaluada (o de otra con el mismo contenido) no vuelve a llamar al modelo.
+    // Si llegan varias peticiones a la vez para el mismo contenido, solo la primera llama al modelo
+    // y el resto espera (como mucho prediccion.coalescencia.espera) y comparte su resultado
     public String getNewPrediccion(Long id) throws IOException, Exception{
-        Map<String, Double> response = 
-        ImagenAPIPredictor.query(ImageUtils.decompressImage(repositoryImagen.getReferenceById(id).getFile_content()));
+        return getNewPrediccion(id, Duration.ZERO);
+    }
+
+    // esperaLimite: lo que puede esperar la llamada al modelo a que haya hueco en el límite de concurrencia
+    public String getNewPrediccion(Long id, Duration esperaLimite) throws IOException, Exception{
+        Imagen imagen = repositoryImagen.findById(id).orElseThrow(() -> new IOException("No existe la imagen " + id));
+        String modelo = predictor.getModelId() + preprocesadorImagen.getVariante();
+        String cached = prediccionCache.get(imagen.getContentHash(), modelo);
+        if (cached != null) {
+            return cached;
+        }
+        String clave = PrediccionCache.clave(imagen.getContentHash(), modelo);
+        CompletableFuture<String> nueva = new CompletableFuture<>();
+        CompletableFuture<String> existente = prediccionesEnCurso.putIfAbsent(clave, nueva);
+        if (existente != null) {
+            prediccionesCoalescidas.increment();
+            try {
+                return existente.get(esperaCoalescencia.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            } catch (TimeoutException e) {
+                throw new PrediccionNoDisponibleException("La predicción en curso de esta imagen no ha terminado a tiempo");
+            }
+        }
+        // Entre la consulta a la caché y el putIfAbsent otra petición ha podido terminar y guardar el resultado
+        try {
+            String resultado = prediccionCache.get(imagen.getContentHash(), modelo);
+            if (resultado == null) {
+                resultado = predecir(imagen, esperaLimite);
+                prediccionCache.put(imagen.getContentHash(), modelo, resultado);
+            }
+            nueva.complete(resultado);
+            return resultado;
+        } catch (Throwable t) {
+            // También con un Error, para que las peticiones que esperan no se queden bloqueadas
+            nueva.completeExceptionally(t);
+            throw t;
+        } finally {
+            prediccionesEnCurso.remove(clave, nueva);
+        }
+    }
+
+    private String predecir(Imagen imagen, Duration esperaLimite) throws IOException, Exception {
+        byte[] content = preprocesadorImagen.preprocesar(imagen.getContentHash(), () -> getImageContent(imagen));
+        Map<String, Double> response = proteccionPredictor.ejecutar(() -> predictor.query(content), esperaLimite);
         System.out.println("resp");
         System.out.println( response);
         double score_0 = response.get("LABEL_0");
         double score_1 = response.get("LABEL_1");
-        System.out.println("resp");
-        System.out.println( response);
         String resulString;
         if (score_0 > score_1){
             resulString = "Not cancer (label 0),  score: " + score_0;
@@ -47,39 +197,290 @@ public class ImagenService {
         return repositoryImagen.saveAndFlush(imagen);
     }
 
+    @Transactional
+    public List<Imagen> addImagenes(List<Imagen> imagenes) {
+        return repositoryImagen.saveAll(imagenes);
+    }
+
     public void updateImagen(Imagen imagen) {
         repositoryImagen.save(imagen);
     }
 
-    public void removeImagen(Imagen imagen) {
+    // El blob se libera cuando el borrado de la fila ya está confirmado
+    @Transactional
+    public void removeImagen(Imagen imagen) throws IOException {
         repositoryImagen.delete(imagen);
+        despuesDeConfirmar(imagen.getContentHash(), imagen.getCodec());
     }
 
-    public void removeImagenByID(Long id) {
+    @Transactional
+    public void removeImagenByID(Long id) throws IOException {
+        Imagen imagen = findImagen(id);
         repositoryImagen.deleteById(id);
+        if (imagen != null) {
+            despuesDeConfirmar(imagen.getContentHash(), imagen.getCodec());
+        }
+    }
+
+    // Las imágenes de un paciente o médico borrado las elimina la base de datos en cascada, sin pasar por aquí:
+    // quien borra recoge antes sus blobs y se liberan por el mismo camino cuando se confirma el borrado
+    public void liberarBlobsDespuesDeConfirmar(List<BlobImagen> blobs) {
+        for (BlobImagen blob : blobs) {
+            despuesDeConfirmar(blob.contentHash(), blob.codec());
+        }
     }
 
-    public List<Imagen> getImagenesPaciente(Long id) {
-        return repositoryImagen.getByPacienteId(id);
+    private void despuesDeConfirmar(String contentHash, ImageCodec codec) {
+        if (contentHash == null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    releaseBlob(contentHash, codec);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    // Varias imágenes pueden compartir el mismo blob, solo se borra cuando ya nadie lo referencia.
+    // El blob depende del codec, pero las miniaturas solo del hash: se conservan mientras quede alguna imagen
+    // con ese contenido. La comprobación y el borrado van bajo el cerrojo del hash para no cruzarse con una
+    // subida del mismo contenido
+    private void releaseBlob(String contentHash, ImageCodec codec) throws IOException {
+        Lock cerrojo = cerrojoBlob(contentHash);
+        cerrojo.lock();
+        try {
+            if (!consultaReferencias.execute(status -> repositoryImagen.existsBlob(contentHash, codec))) {
+                blobStore.delete(blobKey(contentHash, codec));
+                if (!consultaReferencias.execute(status -> repositoryImagen.existsByContentHash(contentHash))) {
+                    derivadoService.delete(contentHash);
+                }
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    private Lock cerrojoBlob(String contentHash) {
+        return cerrojosBlob[Math.floorMod(contentHash.hashCode(), cerrojosBlob.length)];
+    }
+
+    // Clave del blob en el BlobStore. El mismo contenido puede estar guardado con distintos codecs
+    // (por ejemplo, imágenes migradas desde el antiguo LOB), así que los blobs sin comprimir llevan sufijo
+    static String blobKey(String contentHash, ImageCodec codec) {
+        return codec == ImageCodec.NONE ? contentHash + "-raw" : contentHash;
+    }
+
+    static String blobKey(Imagen imagen) {
+        return blobKey(imagen.getContentHash(), imagen.getCodec());
+    }
+
+    // Paginado por (fecha, id): el cursor lleva la fecha en milisegundos y el id de la última imagen
+    public Pagina<ImagenInfo> getImagenesPaciente(Long id, String cursor, int tamano) {
+        List<ImagenInfo> filas;
+        if (cursor == null) {
+            filas = repositoryImagen.findInfoByPacienteId(id, Pagina.limite(tamano));
+        } else {
+            long[] clave = Cursor.decode(cursor, 2);
+            Calendar fecha = Calendar.getInstance();
+            fecha.setTimeInMillis(clave[0]);
+            filas = repositoryImagen.findInfoByPacienteIdAfter(id, fecha, clave[1], Pagina.limite(tamano));
+        }
+        return Pagina.of(filas, tamano, i -> Cursor.encode(i.fecha().getTimeInMillis(), i.id()));
     }
 
+    // La imagen se codifica por bloques a un fichero temporal del BlobStore mientras se calcula su hash,
+    // y al terminar se mueve a su ubicación definitiva; la memoria usada no depende del tamaño del fichero.
+    // El codec y el nivel dependen del formato detectado en la cabecera. Si la transacción no se confirma,
+    // el blob se libera igual que al borrar la imagen
+    @Transactional
     public String uploadImage(MultipartFile file, Paciente paciente) throws IOException {
-        Imagen imagen = new Imagen();
-        imagen.setNombre(file.getOriginalFilename());
-        imagen.setFile_content(ImageUtils.compressImage(file.getBytes()));
-        imagen.setPaciente(paciente);
-        imagen.setFecha(Calendar.getInstance());
-        imagen = repositoryImagen.saveAndFlush(imagen);
-        if (imagen != null) {
-            return "{\"response\" : \"file uploaded successfully : " + file.getOriginalFilename()+"\"}";
+        Path compressed = blobStore.createTempFile();
+        try {
+            MessageDigest digest = sha256();
+            CRC32 crc = new CRC32();
+            ImageFormat formato;
+            long size;
+            long start = System.nanoTime();
+            try (InputStream in = new BufferedInputStream(new CheckedInputStream(new DigestInputStream(file.getInputStream(), digest), crc), 8*1024);
+                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(compressed))) {
+                formato = ImageUtils.detectFormat(in);
+                size = ImageUtils.compressImage(in, out, formato.getCodec(), formato.getLevel());
+            }
+            recordCompression(formato, size, Files.size(compressed), System.nanoTime() - start);
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+            ImageCodec codec = formato.getCodec();
+            Lock cerrojo = cerrojoBlob(contentHash);
+            cerrojo.lock();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    try {
+                        if (status != STATUS_COMMITTED) {
+                            releaseBlob(contentHash, codec);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        cerrojo.unlock();
+                    }
+                }
+            });
+            blobStore.put(blobKey(contentHash, codec), compressed);
+
+            Imagen imagen = new Imagen();
+            imagen.setNombre(file.getOriginalFilename());
+            imagen.setContentHash(contentHash);
+            imagen.setSize(size);
+            imagen.setCrc(crc.getValue());
+            imagen.setFormato(formato);
+            imagen.setCodec(codec);
+            imagen.setPaciente(paciente);
+            imagen.setFecha(Calendar.getInstance());
+            imagen = repositoryImagen.saveAndFlush(imagen);
+            if (imagen != null) {
+                // Las miniaturas se generan cuando la imagen ya está confirmada
+                Imagen guardada = imagen;
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        derivadoService.generarEnSegundoPlano(contentHash, () -> getImageContent(guardada));
+                    }
+                });
+                return "{\"response\" : \"file uploaded successfully : " + file.getOriginalFilename()+"\"}";
+            }
+            return null;
+        } finally {
+            Files.deleteIfExists(compressed);
+        }
+    }
+
+    // Métricas por formato para poder ajustar los niveles de compresión de ImageFormat
+    private void recordCompression(ImageFormat formato, long original, long stored, long nanos) {
+        String codec = formato.getCodec().name();
+        Timer.builder("imagen.compresion.tiempo")
+            .tag("formato", formato.name()).tag("codec", codec)
+            .register(meterRegistry).record(nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("imagen.compresion.ratio")
+            .tag("formato", formato.name()).tag("codec", codec)
+            .register(meterRegistry).record(original == 0 ? 1.0 : (double) stored / original);
+        meterRegistry.counter("imagen.compresion.bytes", "formato", formato.name(), "tipo", "original").increment(original);
+        meterRegistry.counter("imagen.compresion.bytes", "formato", formato.name(), "tipo", "almacenado").increment(stored);
+    }
+
+    // Tamaño de la imagen original; si no está guardado se calcula una vez recorriendo el blob
+    public long getImageSize(Imagen imagen) throws IOException {
+        if (imagen.getSize() == null) {
+            if (imagen.getCodec() == ImageCodec.NONE) {
+                imagen.setSize(blobStore.size(blobKey(imagen)));
+            } else {
+                try (InputStream in = blobStore.open(blobKey(imagen))) {
+                    imagen.setSize(ImageUtils.decompressedLength(in));
+                }
+            }
+            repositoryImagen.save(imagen);
+        }
+        return imagen.getSize();
+    }
+
+    // Escribe en la salida el rango pedido de la imagen. Si el blob está sin comprimir se copia
+    // con transferTo; si no, se descomprime al vuelo
+    public void downloadImage(Imagen imagen, long offset, long length, OutputStream out) throws IOException {
+        if (imagen.getCodec() == ImageCodec.NONE) {
+            blobStore.transferTo(blobKey(imagen), offset, length, Channels.newChannel(out));
+            return;
+        }
+        try (InputStream in = blobStore.open(blobKey(imagen))) {
+            ImageUtils.decompressImage(in, out, offset, length);
+        }
+    }
+
+    // CRC-32 de la imagen original; el de las imágenes subidas antes de guardarlo se calcula una vez
+    // recorriendo el blob, igual que el tamaño
+    public long getImageCrc(Imagen imagen) throws IOException {
+        if (imagen.getCrc() == null) {
+            CRC32 crc = new CRC32();
+            try (InputStream in = blobStore.open(blobKey(imagen));
+                 OutputStream out = new CheckedOutputStream(OutputStream.nullOutputStream(), crc)) {
+                imagen.setSize(imagen.getCodec() == ImageCodec.NONE
+                    ? in.transferTo(out)
+                    : ImageUtils.decompressImage(in, out, 0, Long.MAX_VALUE));
+            }
+            imagen.setCrc(crc.getValue());
+            repositoryImagen.save(imagen);
+        }
+        return imagen.getCrc();
+    }
+
+    // Entradas del ZIP con las imágenes de un paciente. Un blob DEFLATE es un flujo zlib: quitando los 2 bytes
+    // de cabecera y los 4 del Adler-32 final queda el deflate sin envoltorio que usa ZIP, así que se copia
+    // con transferTo sin descomprimir ni volver a comprimir. Los blobs sin comprimir van como entradas STORED
+    public List<ZipWriter.Entrada> getEntradasZip(Long pacienteId) throws IOException {
+        List<ZipWriter.Entrada> entradas = new ArrayList<>();
+        for (Imagen imagen : repositoryImagen.findByPacienteIdOrderByFecha(pacienteId)) {
+            String key = blobKey(imagen);
+            long crc = getImageCrc(imagen);
+            long size = getImageSize(imagen);
+            long fecha = imagen.getFecha().getTimeInMillis();
+            String nombre = nombreEntrada(imagen);
+            if (imagen.getCodec() == ImageCodec.NONE) {
+                entradas.add(new ZipWriter.Entrada(nombre, fecha, false, crc, size, size,
+                    out -> blobStore.transferTo(key, 0, size, Channels.newChannel(out))));
+            } else {
+                long deflate = blobStore.size(key) - 6;
+                entradas.add(new ZipWriter.Entrada(nombre, fecha, true, crc, deflate, size,
+                    out -> blobStore.transferTo(key, 2, deflate, Channels.newChannel(out))));
+            }
+        }
+        return entradas;
+    }
+
+    // El id delante evita nombres repetidos; las barras se sustituyen para que no se creen directorios
+    private static String nombreEntrada(Imagen imagen) {
+        String nombre = imagen.getNombre() != null ? imagen.getNombre() : "imagen";
+        return imagen.getId() + "_" + nombre.replaceAll("[/\\\\\\p{Cntrl}]", "_");
+    }
+
+    // Bytes tal y como están guardados (zlib para DEFLATE), para enviarlos con Content-Encoding: deflate
+    public long getStoredSize(Imagen imagen) throws IOException {
+        return blobStore.size(blobKey(imagen));
+    }
+
+    public void downloadStored(Imagen imagen, OutputStream out) throws IOException {
+        blobStore.transferTo(blobKey(imagen), 0, getStoredSize(imagen), Channels.newChannel(out));
+    }
+
+    // Imagen completa. El blob se proyecta en memoria y se copia (o descomprime)
+    // directamente en un array del tamaño exacto de la imagen
+    public byte[] getImageContent(Long id) throws IOException {
+        return getImageContent(repositoryImagen.findById(id).orElseThrow(() -> new IOException("No existe la imagen " + id)));
+    }
+
+    public byte[] getImageContent(Imagen imagen) throws IOException {
+        ByteBuffer stored = blobStore.map(blobKey(imagen));
+        if (imagen.getCodec() == ImageCodec.NONE) {
+            byte[] content = new byte[stored.remaining()];
+            stored.get(content);
+            return content;
         }
-        return null;
+        return ImageUtils.decompressImage(stored, Math.toIntExact(getImageSize(imagen)));
     }
 
-    public byte[] downloadImage(long id) {
-        Imagen dbImageData = repositoryImagen.getReferenceById(id);
-        byte[] images = ImageUtils.decompressImage(dbImageData.getFile_content());
-        return images;
+    // Clave de la miniatura del ancho pedido; se genera en ese momento si todavía no existe
+    public String getDerivado(Imagen imagen, int ancho) throws IOException {
+        return derivadoService.obtener(imagen.getContentHash(), ancho, () -> getImageContent(imagen));
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
 }
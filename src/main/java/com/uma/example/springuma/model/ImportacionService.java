@@ -0,0 +1,307 @@
+package com.uma.example.springuma.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+// Alta masiva de médicos y pacientes desde CSV (con cabecera) o NDJSON (un objeto JSON por línea).
+// El fichero se lee línea a línea y las filas válidas se guardan en lotes de importacion.lote, cada uno en su
+// propia transacción y con el contexto de persistencia vaciado después, así que la memoria no depende del tamaño
+// del fichero. Una fila inválida o repetida se rechaza sin afectar al resto
+@Service
+public class ImportacionService {
+
+    public enum Formato { CSV, NDJSON }
+
+    // Columnas de cada fila; en pacientes, medico es el DNI del médico
+    public record FilaMedico(String dni, String nombre, String especialidad) {
+    }
+
+    public record FilaPaciente(String dni, String nombre, Integer edad, String cita, String medico) {
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final CsvMapper CSV = (CsvMapper) new CsvMapper()
+        .enable(CsvParser.Feature.TRIM_SPACES)
+        .enable(CsvParser.Feature.EMPTY_STRING_AS_NULL)
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Autowired
+    private RepositoryMedico repositoryMedico;
+
+    @Autowired
+    private RepositoryPaciente repositoryPaciente;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${importacion.lote:500}")
+    private int tamanoLote;
+
+    @Value("${importacion.max-errores:1000}")
+    private int maxErrores;
+
+    // Médicos distintos cuyo id se recuerda durante una importación de pacientes
+    @Value("${importacion.cache-medicos.max-entries:10000}")
+    private int maxMedicos;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public ResultadoImportacion importarMedicos(InputStream in, Formato formato) throws IOException {
+        return new Importacion<FilaMedico, Medico>("medico", FilaMedico.class, repositoryMedico) {
+            @Override
+            String validar(FilaMedico fila) {
+                if (vacio(fila.dni())) {
+                    return "Falta el DNI";
+                }
+                if (vacio(fila.nombre())) {
+                    return "Falta el nombre";
+                }
+                return null;
+            }
+
+            @Override
+            String dni(FilaMedico fila) {
+                return fila.dni();
+            }
+
+            @Override
+            List<String> existentes(Set<String> dnis) {
+                return repositoryMedico.findDnisExistentes(dnis);
+            }
+
+            @Override
+            Medico crear(FilaMedico fila) {
+                return new Medico(fila.dni(), fila.nombre(), fila.especialidad());
+            }
+        }.ejecutar(in, formato);
+    }
+
+    public ResultadoImportacion importarPacientes(InputStream in, Formato formato) throws IOException {
+        // DNI del médico -> id (null si no existe), para no consultarlo en cada fila
+        Map<String, Long> medicos = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxMedicos;
+            }
+        };
+        return new Importacion<FilaPaciente, Paciente>("paciente", FilaPaciente.class, repositoryPaciente) {
+            @Override
+            String validar(FilaPaciente fila) {
+                if (vacio(fila.dni())) {
+                    return "Falta el DNI";
+                }
+                if (vacio(fila.nombre())) {
+                    return "Falta el nombre";
+                }
+                if (fila.edad() == null || fila.edad() < 0 || fila.edad() > 150) {
+                    return "Edad no válida";
+                }
+                if (vacio(fila.medico())) {
+                    return "Falta el DNI del médico";
+                }
+                if (!medicos.containsKey(fila.medico())) {
+                    Medico medico = repositoryMedico.getMedicoByDni(fila.medico());
+                    medicos.put(fila.medico(), medico == null ? null : medico.getId());
+                }
+                if (medicos.get(fila.medico()) == null) {
+                    return "No existe ningún médico con DNI " + fila.medico();
+                }
+                return null;
+            }
+
+            @Override
+            String dni(FilaPaciente fila) {
+                return fila.dni();
+            }
+
+            @Override
+            List<String> existentes(Set<String> dnis) {
+                return repositoryPaciente.findDnisExistentes(dnis);
+            }
+
+            @Override
+            Paciente crear(FilaPaciente fila) {
+                // Referencia sin consulta: solo hace falta el id para la clave ajena
+                Medico medico = repositoryMedico.getReferenceById(medicos.get(fila.medico()));
+                return new Paciente(fila.nombre(), fila.edad(), fila.cita(), fila.dni(), medico);
+            }
+        }.ejecutar(in, formato);
+    }
+
+    private static boolean vacio(String valor) {
+        return valor == null || valor.isBlank();
+    }
+
+    private record Pendiente<F>(long linea, String dni, F fila) {
+    }
+
+    // Recorrido común a las dos importaciones; cada una indica cómo validar, comprobar duplicados y crear la entidad
+    private abstract class Importacion<F, E> {
+
+        private final String entidad;
+        private final Class<F> tipo;
+        private final JpaRepository<E, Long> repository;
+
+        private final List<Pendiente<F>> lote = new ArrayList<>();
+        private final Set<String> dnisLote = new HashSet<>();
+        private final List<ResultadoImportacion.ErrorFila> errores = new ArrayList<>();
+        private long filas;
+        private long importadas;
+        private long rechazadas;
+
+        Importacion(String entidad, Class<F> tipo, JpaRepository<E, Long> repository) {
+            this.entidad = entidad;
+            this.tipo = tipo;
+            this.repository = repository;
+        }
+
+        abstract String validar(F fila);
+
+        abstract String dni(F fila);
+
+        abstract List<String> existentes(Set<String> dnis);
+
+        abstract E crear(F fila);
+
+        ResultadoImportacion ejecutar(InputStream in, Formato formato) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            long linea = 0;
+            ObjectReader lector;
+            if (formato == Formato.CSV) {
+                String cabecera = reader.readLine();
+                linea++;
+                if (cabecera == null || cabecera.isBlank()) {
+                    throw new IllegalArgumentException("Falta la cabecera del CSV");
+                }
+                CsvSchema.Builder schema = CsvSchema.builder();
+                for (String columna : cabecera.split(",")) {
+                    schema.addColumn(columna.trim());
+                }
+                lector = CSV.readerFor(tipo).with(schema.build());
+            } else {
+                lector = JSON.readerFor(tipo);
+            }
+
+            String texto;
+            while ((texto = reader.readLine()) != null) {
+                linea++;
+                if (texto.isBlank()) {
+                    continue;
+                }
+                filas++;
+                F fila;
+                try {
+                    fila = lector.readValue(texto);
+                } catch (JsonProcessingException e) {
+                    rechazar(linea, null, "Fila mal formada: " + e.getOriginalMessage());
+                    continue;
+                }
+                String error = validar(fila);
+                if (error != null) {
+                    rechazar(linea, dni(fila), error);
+                } else if (!dnisLote.add(dni(fila))) {
+                    rechazar(linea, dni(fila), "DNI repetido en el fichero");
+                } else {
+                    lote.add(new Pendiente<>(linea, dni(fila), fila));
+                    if (lote.size() >= tamanoLote) {
+                        guardarLote();
+                    }
+                }
+            }
+            guardarLote();
+
+            meterRegistry.counter("importacion.filas", "entidad", entidad, "resultado", "importada").increment(importadas);
+            meterRegistry.counter("importacion.filas", "entidad", entidad, "resultado", "rechazada").increment(rechazadas);
+            return new ResultadoImportacion(filas, importadas, rechazadas, errores);
+        }
+
+        // Un lote por transacción: los DNIs que ya existen se descartan con una sola consulta y el resto
+        // se inserta con saveAllAndFlush, que Hibernate agrupa en sentencias por lotes
+        private void guardarLote() {
+            if (lote.isEmpty()) {
+                return;
+            }
+            try {
+                Set<String> duplicados = transactionTemplate.execute(status -> {
+                    Set<String> yaExisten = new HashSet<>(existentes(dnisLote));
+                    List<E> nuevas = new ArrayList<>(lote.size());
+                    for (Pendiente<F> pendiente : lote) {
+                        if (!yaExisten.contains(pendiente.dni())) {
+                            nuevas.add(crear(pendiente.fila()));
+                        }
+                    }
+                    repository.saveAllAndFlush(nuevas);
+                    return yaExisten;
+                });
+                for (Pendiente<F> pendiente : lote) {
+                    if (duplicados.contains(pendiente.dni())) {
+                        rechazar(pendiente.linea(), pendiente.dni(), "Ya existe");
+                    } else {
+                        importadas++;
+                    }
+                }
+            } catch (DataAccessException | TransactionException e) {
+                String causa = e.getMostSpecificCause().getMessage();
+                for (Pendiente<F> pendiente : lote) {
+                    rechazar(pendiente.linea(), pendiente.dni(), "No se pudo guardar el lote: " + causa);
+                }
+            } finally {
+                // Las entidades ya guardadas no se vuelven a usar; se sueltan para que no crezca la memoria
+                entityManager.clear();
+                lote.clear();
+                dnisLote.clear();
+            }
+        }
+
+        private void rechazar(long linea, String dni, String error) {
+            rechazadas++;
+            if (errores.size() < maxErrores) {
+                errores.add(new ResultadoImportacion.ErrorFila(linea, dni, error));
+            }
+        }
+    }
+}
@@ -7,18 +7,24 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 
 @Entity
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@Table(indexes = @Index(name = "idx_informe_imagen", columnList = "imagen_id, id"))
 public class Informe {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "informe_seq")
+    @SequenceGenerator(name = "informe_seq", sequenceName = "informe_seq", allocationSize = 50)
     private long id;
 
     @Column(name = "prediccion")
@@ -28,7 +34,8 @@ public class Informe {
     private String contenido;
 
     // Relación con imagen (muchas imágenes pueden pertenecer a un informe)
-    @ManyToOne()
+    // LAZY: cada consulta decide con un EntityGraph si necesita la imagen y su paciente
+    @ManyToOne(fetch = FetchType.LAZY)
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "imagen_id")
     private Imagen imagen;
@@ -5,10 +5,9 @@ import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import com.uma.example.springuma.utils.ImageUtils;
-
-import java.util.Map;
+import com.uma.example.springuma.utils.Cursor;
 
 
 @Service
@@ -18,10 +17,14 @@ public class InformeService {
     private RepositoryInforme repositoryInforme;
 
     @Autowired
-    private RepositoryImagen repositoryImage;
+    private ImagenService imagenService;
+
+    @Autowired
+    private TareaPrediccionService tareaPrediccionService;
 
-    public List<Informe> getAllInformes() {
-        return repositoryInforme.findAll();
+    public Pagina<Informe> getAllInformes(String cursor, int tamano) {
+        return Pagina.of(repositoryInforme.findByIdGreaterThanOrderById(Pagina.despuesDe(cursor), Pagina.limite(tamano)),
+            tamano, i -> Cursor.encode(i.getId()));
     }
 
     public Informe getInforme(Long id) {
@@ -37,9 +40,27 @@ public class InformeService {
 
         return repositoryInforme.saveAndFlush(informe);
     }
+
+    // Guarda el informe sin esperar a la predicción, que se rellena más tarde desde la cola de tareas
+    @Transactional
+    public Informe addInformeAsync(Informe informe) {
+        informe.setPrediccion(null);
+        informe = repositoryInforme.saveAndFlush(informe);
+        tareaPrediccionService.encolar(informe);
+        return informe;
+    }
     
 
     
+    // Alta en bloque de informes asíncronos: informes y tareas se insertan por lotes en la misma transacción
+    @Transactional
+    public List<Informe> addInformesAsync(List<Informe> informes) {
+        informes.forEach(informe -> informe.setPrediccion(null));
+        List<Informe> saved = repositoryInforme.saveAll(informes);
+        tareaPrediccionService.encolar(saved);
+        return saved;
+    }
+
     public void updateInforme(Informe informe) throws IOException, Exception {
         // Puedes implementar la lógica de actualización según tus necesidades
         // Aquí se muestra un ejemplo básico:
@@ -60,29 +81,15 @@ public class InformeService {
         repositoryInforme.deleteById(id);
     }
 
-    public List<Informe> getInformesImagen(Long id) {
-        return repositoryInforme.findByImagenId(id);
+    public Pagina<Informe> getInformesImagen(Long id, String cursor, int tamano) {
+        return Pagina.of(repositoryInforme.findByImagenIdAndIdGreaterThanOrderById(id, Pagina.despuesDe(cursor), Pagina.limite(tamano)),
+            tamano, i -> Cursor.encode(i.getId()));
     }
 
     
+    // Se delega en ImagenService para compartir la caché de predicciones
     public String getNewPrediccion(Informe informe) throws IOException, Exception{
-        Map<String, Double> response =  ImagenAPIPredictor
-        .query(ImageUtils.decompressImage(repositoryImage.getReferenceById(informe.getImagen().getId())
-        .getFile_content()));
-        //informe.setPrediccion((String)response.get("0"));
-        System.out.println("resp");
-        System.out.println( response);
-        double score_0 = response.get("LABEL_0");
-        double score_1 = response.get("LABEL_1");
-        System.out.println("resp");
-        System.out.println( response);
-        String resulString;
-        if (score_0 > score_1){
-            resulString = "Not cancer (label 0),  score: " + score_0;
-        }else{
-            resulString = "Cancer (label 1), score: " + score_1;
-        }
-        return resulString;
+        return imagenService.getNewPrediccion(informe.getImagen().getId());
     }
     
 }
@@ -2,17 +2,34 @@ package com.uma.example.springuma.model;
 
 import java.util.List;
 
+import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.uma.example.springuma.utils.Cursor;
+
+import jakarta.persistence.EntityManagerFactory;
 
 @Service
 public class MedicoService {
     @Autowired
     RepositoryMedico repositoryMedico;
 
-    public List<Medico> getAllMedicos(){
-        return repositoryMedico.findAll();
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private RepositoryImagen repositoryImagen;
+
+    @Autowired
+    private ImagenService imagenService;
+
+    public Pagina<Medico> getAllMedicos(String cursor, int tamano){
+        return Pagina.of(repositoryMedico.findByIdGreaterThanOrderById(Pagina.despuesDe(cursor), Pagina.limite(tamano)),
+            tamano, m -> Cursor.encode(m.getId()));
     }
 
     public Medico getMedico(Long id){
@@ -24,16 +41,42 @@ public class MedicoService {
         return repositoryMedico.saveAndFlush(m);
     }
 
+    // Alta en bloque: con hibernate.jdbc.batch_size los INSERT se envían por lotes en una única transacción
+    @Transactional
+    public List<Medico> addMedicos(List<Medico> medicos){
+        return repositoryMedico.saveAll(medicos);
+    }
+
     public void updateMedico(Medico m){
         repositoryMedico.save(m);
     }
 
+    // Las imágenes de sus pacientes también caen en cascada: sus blobs se liberan al confirmar el borrado
+    @Transactional
     public void removeMedico(Medico m){
+        imagenService.liberarBlobsDespuesDeConfirmar(repositoryImagen.findBlobsByMedicoId(m.getId()));
         repositoryMedico.delete(m);
+        evictPacientes();
     }
 
+    @Transactional
     public void removeMedicoID(Long id){
+        imagenService.liberarBlobsDespuesDeConfirmar(repositoryImagen.findBlobsByMedicoId(id));
         repositoryMedico.deleteById(id);
+        evictPacientes();
+    }
+
+    // Los pacientes del médico los borra la propia base de datos (ON DELETE CASCADE) y Hibernate no se entera:
+    // hay que sacarlos a mano de la caché de segundo nivel junto con las consultas cacheadas, una vez confirmado
+    // el borrado para que nadie vuelva a cachearlos entretanto
+    private void evictPacientes() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                entityManagerFactory.getCache().evict(Paciente.class);
+                entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+            }
+        });
     }
 
     public Medico getMedicoByDni(String dni) {
@@ -0,0 +1,173 @@
+package com.uma.example.springuma.model;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Inferencia en el propio proceso con ONNX Runtime sobre CPU, sin pasar por la red.
+// La imagen se escala al tamaño de entrada del modelo, se normaliza por canal y se pasa como tensor
+// NCHW o NHWC según prediccion.onnx.layout
+@Component
+@ConditionalOnProperty(name = "prediccion.backend", havingValue = "onnx")
+public class OnnxPredictor implements Predictor {
+
+    @Value("${prediccion.onnx.modelo}")
+    private String modelo;
+
+    @Value("${prediccion.onnx.tamano:224}")
+    private int tamano;
+
+    @Value("${prediccion.onnx.layout:NCHW}")
+    private String layout;
+
+    @Value("${prediccion.onnx.media:0.5,0.5,0.5}")
+    private float[] media;
+
+    @Value("${prediccion.onnx.desviacion:0.5,0.5,0.5}")
+    private float[] desviacion;
+
+    // Aplica softmax a la salida si el modelo devuelve logits en lugar de probabilidades
+    @Value("${prediccion.onnx.softmax:true}")
+    private boolean softmax;
+
+    @Value("${prediccion.onnx.hilos:0}")
+    private int hilos;
+
+    private OrtEnvironment environment;
+    private OrtSession session;
+    private String inputName;
+    private String modelId;
+
+    @PostConstruct
+    void init() throws OrtException, IOException {
+        modelId = "onnx:" + Paths.get(modelo).getFileName() + "@" + checksum(Paths.get(modelo));
+        environment = OrtEnvironment.getEnvironment();
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        if (hilos > 0) {
+            options.setIntraOpNumThreads(hilos);
+        }
+        session = environment.createSession(modelo, options);
+        inputName = session.getInputNames().iterator().next();
+    }
+
+    @PreDestroy
+    void close() throws OrtException {
+        session.close();
+    }
+
+    // Las predicciones se cachean por modelo: el id lleva el hash del fichero para que sustituir el modelo
+    // por otro con el mismo nombre no siga sirviendo las predicciones del anterior
+    @Override
+    public String getModelId() {
+        return modelId;
+    }
+
+    private static String checksum(Path fichero) throws IOException {
+        MessageDigest digest = ImagenService.sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(fichero), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 8);
+    }
+
+    @Override
+    public Map<String, Double> query(byte[] file_data) throws Exception {
+        float[] input = toTensorData(file_data);
+        long[] shape = "NHWC".equalsIgnoreCase(layout)
+            ? new long[] {1, tamano, tamano, 3}
+            : new long[] {1, 3, tamano, tamano};
+        // OrtSession.run es seguro entre hilos, así que una única sesión atiende todas las peticiones
+        try (OnnxTensor tensor = OnnxTensor.createTensor(environment, FloatBuffer.wrap(input), shape);
+             OrtSession.Result result = session.run(Map.of(inputName, tensor))) {
+            float[] scores = ((float[][]) result.get(0).getValue())[0];
+            return toLabels(scores);
+        }
+    }
+
+    private float[] toTensorData(byte[] file_data) throws IOException {
+        BufferedImage original = ImageIO.read(new ByteArrayInputStream(file_data));
+        if (original == null) {
+            throw new IOException("Formato de imagen no soportado por el modelo local");
+        }
+        BufferedImage rgb = original;
+        if (original.getWidth() != tamano || original.getHeight() != tamano || original.getType() != BufferedImage.TYPE_INT_RGB) {
+            rgb = new BufferedImage(tamano, tamano, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = rgb.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(original, 0, 0, tamano, tamano, null);
+            g.dispose();
+        }
+        int plane = tamano * tamano;
+        boolean nhwc = "NHWC".equalsIgnoreCase(layout);
+        float[] data = new float[3 * plane];
+        int[] pixels = rgb.getRGB(0, 0, tamano, tamano, null, 0, tamano);
+        for (int i = 0; i < plane; i++) {
+            int pixel = pixels[i];
+            for (int c = 0; c < 3; c++) {
+                int value = (pixel >> (16 - 8 * c)) & 0xFF;
+                float normalized = (value / 255f - media[c]) / desviacion[c];
+                data[nhwc ? i * 3 + c : c * plane + i] = normalized;
+            }
+        }
+        return data;
+    }
+
+    private Map<String, Double> toLabels(float[] scores) {
+        Map<String, Double> resultMap = new HashMap<>();
+        if (scores.length == 1) {
+            // Salida binaria con una única probabilidad, la de la clase 1
+            resultMap.put("LABEL_0", 1.0 - scores[0]);
+            resultMap.put("LABEL_1", (double) scores[0]);
+            return resultMap;
+        }
+        double[] probabilities = new double[scores.length];
+        if (softmax) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (float score : scores) {
+                max = Math.max(max, score);
+            }
+            double sum = 0;
+            for (int i = 0; i < scores.length; i++) {
+                probabilities[i] = Math.exp(scores[i] - max);
+                sum += probabilities[i];
+            }
+            for (int i = 0; i < scores.length; i++) {
+                probabilities[i] /= sum;
+            }
+        } else {
+            for (int i = 0; i < scores.length; i++) {
+                probabilities[i] = scores[i];
+            }
+        }
+        for (int i = 0; i < probabilities.length; i++) {
+            resultMap.put("LABEL_" + i, probabilities[i]);
+        }
+        return resultMap;
+    }
+}
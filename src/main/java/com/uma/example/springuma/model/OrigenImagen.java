@@ -0,0 +1,9 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+
+// Lectura diferida del contenido de una imagen, para no tocar el blob si el resultado ya está calculado
+@FunctionalInterface
+public interface OrigenImagen {
+    byte[] leer() throws IOException;
+}
@@ -6,24 +6,41 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.uma.example.springuma.utils.Cursor;
+
+import jakarta.persistence.EntityNotFoundException;
+
 @Service
 public class PacienteService {
 
     @Autowired
     RepositoryPaciente repositoryPaciente; // Cambio el nombre y tipo del repositorio
 
-    public List<Paciente> getAllPacientes(){
-        return repositoryPaciente.findAll(); // Cambio el método para devolver una lista de Pacientes
+    @Autowired
+    RepositoryImagen repositoryImagen;
+
+    @Autowired
+    ImagenService imagenService;
+
+    public Pagina<Paciente> getAllPacientes(String cursor, int tamano){
+        return Pagina.of(repositoryPaciente.findByIdGreaterThanOrderById(Pagina.despuesDe(cursor), Pagina.limite(tamano)),
+            tamano, p -> Cursor.encode(p.getId()));
     }
 
     public Paciente getPaciente(Long id){
-        return repositoryPaciente.getReferenceById(id); // Cambio el tipo de retorno a Paciente
+        return repositoryPaciente.findById(id)
+            .orElseThrow(() -> new EntityNotFoundException("No existe el paciente " + id));
     }
     public Paciente addPaciente(Paciente p){
 
         return repositoryPaciente.saveAndFlush(p); // Cambio el tipo de argumento y retorno a Paciente
     }
 
+    @Transactional
+    public List<Paciente> addPacientes(List<Paciente> pacientes){
+        return repositoryPaciente.saveAll(pacientes);
+    }
+
     public void updatePaciente(Paciente p){
         /*Paciente paciente = repositoryPaciente.getReferenceById(p.getId());
         // Aquí podrías actualizar los campos específicos del paciente
@@ -35,15 +52,22 @@ public class PacienteService {
         repositoryPaciente.save(p); // Guardamos el paciente actualizado
     }
 
+    // Sus imágenes las borra la base de datos (ON DELETE CASCADE): los blobs se recogen antes del borrado
+    // y se liberan cuando este se confirma
+    @Transactional
     public void removePaciente(Paciente p){
+        imagenService.liberarBlobsDespuesDeConfirmar(repositoryImagen.findBlobsByPacienteId(p.getId()));
         repositoryPaciente.delete(p); // Cambio a eliminar un Paciente
     }
 
+    @Transactional
     public void removePacienteID(Long id){
+        imagenService.liberarBlobsDespuesDeConfirmar(repositoryImagen.findBlobsByPacienteId(id));
         repositoryPaciente.deleteById(id); // Cambio a eliminar un Paciente por ID
     }
 
-    public List<Paciente> getPacientesMedico(Long id) {
-        return repositoryPaciente.findByMedicoId(id);
+    public Pagina<Paciente> getPacientesMedico(Long id, String cursor, int tamano) {
+        return Pagina.of(repositoryPaciente.findByMedicoIdAndIdGreaterThanOrderById(id, Pagina.despuesDe(cursor), Pagina.limite(tamano)),
+            tamano, p -> Cursor.encode(p.getId()));
     }
 }
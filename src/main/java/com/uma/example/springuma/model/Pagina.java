@@ -0,0 +1,40 @@
+package com.uma.example.springuma.model;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Limit;
+
+import com.uma.example.springuma.utils.Cursor;
+
+// Página de un listado paginado por clave. nextCursor es null en la última página
+public record Pagina<T>(List<T> items, String nextCursor) {
+
+    public static final int TAMANO_POR_DEFECTO = 50;
+    public static final int TAMANO_MAXIMO = 200;
+
+    public static int tamano(Integer size) {
+        if (size == null) {
+            return TAMANO_POR_DEFECTO;
+        }
+        return Math.max(1, Math.min(size, TAMANO_MAXIMO));
+    }
+
+    // Se pide una fila más de las que caben para saber si hay página siguiente sin hacer un count
+    static Limit limite(int tamano) {
+        return Limit.of(tamano + 1);
+    }
+
+    // Id a partir del cual empieza la página en los listados ordenados solo por id
+    static long despuesDe(String cursor) {
+        return cursor == null ? 0 : Cursor.decode(cursor, 1)[0];
+    }
+
+    static <T> Pagina<T> of(List<T> filas, int tamano, Function<T, String> cursor) {
+        if (filas.size() <= tamano) {
+            return new Pagina<>(filas, null);
+        }
+        List<T> items = filas.subList(0, tamano);
+        return new Pagina<>(items, cursor.apply(items.get(tamano - 1)));
+    }
+}
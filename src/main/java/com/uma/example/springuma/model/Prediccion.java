@@ -0,0 +1,61 @@
+package com.uma.example.springuma.model;
+
+import java.util.Calendar;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+// Resultado de una predicción guardado por PrediccionCache para que sobreviva a los reinicios.
+// La clave combina el hash del contenido de la imagen y el modelo que la ha evaluado
+@Entity
+// Los resultados caducados se borran por fecha
+@Table(indexes = @Index(name = "idx_prediccion_fecha", columnList = "fecha"))
+public class Prediccion {
+
+    @Id
+    @Column(name = "clave", length = 200)
+    private String clave;
+
+    @Column(name = "resultado")
+    private String resultado;
+
+    @Column(name = "fecha")
+    private Calendar fecha;
+
+    public Prediccion() {
+        // Constructor vacío necesario para JPA
+    }
+
+    public Prediccion(String clave, String resultado, Calendar fecha) {
+        this.clave = clave;
+        this.resultado = resultado;
+        this.fecha = fecha;
+    }
+
+    public String getClave() {
+        return clave;
+    }
+
+    public void setClave(String clave) {
+        this.clave = clave;
+    }
+
+    public String getResultado() {
+        return resultado;
+    }
+
+    public void setResultado(String resultado) {
+        this.resultado = resultado;
+    }
+
+    public Calendar getFecha() {
+        return fecha;
+    }
+
+    public void setFecha(Calendar fecha) {
+        this.fecha = fecha;
+    }
+}
@@ -0,0 +1,125 @@
+package com.uma.example.springuma.model;
+
+import java.time.Duration;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+// Caché de resultados de predicción por hash del contenido de la imagen y modelo. En memoria es una LRU
+// acotada con caducidad; si prediccion.cache.persist está activo, los resultados también se guardan
+// en la tabla prediccion para que sigan disponibles después de un reinicio, y los caducados se borran
+// de la tabla periódicamente
+@Component
+public class PrediccionCache {
+
+    @Autowired
+    private RepositoryPrediccion repositoryPrediccion;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${prediccion.cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${prediccion.cache.ttl:PT24H}")
+    private Duration ttl;
+
+    @Value("${prediccion.cache.persist:true}")
+    private boolean persist;
+
+    private Map<String, Entrada> entradas;
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+    private Counter purgadas;
+
+    private record Entrada(String resultado, long caducidad) {
+    }
+
+    @PostConstruct
+    void init() {
+        hits = meterRegistry.counter("prediccion.cache.peticiones", "resultado", "hit");
+        misses = meterRegistry.counter("prediccion.cache.peticiones", "resultado", "miss");
+        evictions = meterRegistry.counter("prediccion.cache.expulsiones");
+        purgadas = meterRegistry.counter("prediccion.cache.purgadas");
+        entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        meterRegistry.gauge("prediccion.cache.entradas", this, cache -> cache.size());
+    }
+
+    public static String clave(String contentHash, String modelo) {
+        return modelo + ":" + contentHash;
+    }
+
+    public String get(String contentHash, String modelo) {
+        String clave = clave(contentHash, modelo);
+        long ahora = System.currentTimeMillis();
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(clave);
+            if (entrada != null) {
+                if (entrada.caducidad() > ahora) {
+                    hits.increment();
+                    return entrada.resultado();
+                }
+                entradas.remove(clave);
+            }
+        }
+        if (persist) {
+            Prediccion guardada = repositoryPrediccion.findById(clave).orElse(null);
+            if (guardada != null && guardada.getFecha().getTimeInMillis() + ttl.toMillis() > ahora) {
+                synchronized (entradas) {
+                    entradas.put(clave, new Entrada(guardada.getResultado(), guardada.getFecha().getTimeInMillis() + ttl.toMillis()));
+                }
+                hits.increment();
+                return guardada.getResultado();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String contentHash, String modelo, String resultado) {
+        String clave = clave(contentHash, modelo);
+        Calendar fecha = Calendar.getInstance();
+        synchronized (entradas) {
+            entradas.put(clave, new Entrada(resultado, fecha.getTimeInMillis() + ttl.toMillis()));
+        }
+        if (persist) {
+            repositoryPrediccion.save(new Prediccion(clave, resultado, fecha));
+        }
+    }
+
+    // En memoria la LRU ya acota el tamaño; en la tabla se borran las filas que han superado el TTL
+    @Scheduled(fixedDelayString = "${prediccion.cache.limpieza:3600000}")
+    public void purgar() {
+        if (!persist) {
+            return;
+        }
+        Calendar limite = Calendar.getInstance();
+        limite.setTimeInMillis(limite.getTimeInMillis() - ttl.toMillis());
+        purgadas.increment(repositoryPrediccion.deleteByFechaBefore(limite));
+    }
+
+    public int size() {
+        synchronized (entradas) {
+            return entradas.size();
+        }
+    }
+}
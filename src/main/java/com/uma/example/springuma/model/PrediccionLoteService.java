@@ -0,0 +1,118 @@
+package com.uma.example.springuma.model;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Predicción de varias imágenes a la vez. Las predicciones se lanzan en paralelo sobre un grupo de
+// prediccion.lote.concurrencia hilos compartido por todas las peticiones, y cada resultado se entrega
+// en cuanto termina; el fallo de una imagen se informa en su resultado sin cortar el resto del lote.
+// Las imágenes que esperan turno van a una cola de prediccion.lote.cola plazas: un lote que no cabe se rechaza
+// antes de empezar a responder. Ya en marcha, cada imagen espera (como mucho prediccion.lote.espera-limite)
+// a que haya hueco en el límite de concurrencia del modelo en vez de fallar en cuanto este se reduce
+@Service
+public class PrediccionLoteService {
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Autowired
+    private RepositoryImagen repositoryImagen;
+
+    @Value("${prediccion.lote.concurrencia:8}")
+    private int concurrencia;
+
+    @Value("${prediccion.lote.max-imagenes:200}")
+    private int maxImagenes;
+
+    @Value("${prediccion.lote.cola:400}")
+    private int cola;
+
+    @Value("${prediccion.lote.espera-limite:PT30S}")
+    private Duration esperaLimite;
+
+    private ThreadPoolExecutor executor;
+
+    public interface Receptor {
+        void recibir(ResultadoPrediccion resultado) throws IOException;
+    }
+
+    @PostConstruct
+    void init() {
+        executor = new ThreadPoolExecutor(concurrencia, concurrencia, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(cola), new CustomizableThreadFactory("prediccion-lote-"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Como mucho una más del máximo, suficiente para que el controlador rechace el lote si se pasa
+    public List<Long> getIdsPaciente(Long pacienteId) {
+        return repositoryImagen.findIdsByPacienteId(pacienteId, Limit.of(maxImagenes + 1));
+    }
+
+    public int getMaxImagenes() {
+        return maxImagenes;
+    }
+
+    // Con todos los hilos creados cada tarea nueva pasa por la cola, así que el lote entero tiene que caber en ella
+    public boolean admite(int imagenes) {
+        return executor.getQueue().remainingCapacity() >= imagenes;
+    }
+
+    public void predecir(List<Long> ids, Receptor receptor) throws IOException {
+        CompletionService<ResultadoPrediccion> completion = new ExecutorCompletionService<>(executor);
+        List<Future<ResultadoPrediccion>> futures = new ArrayList<>(ids.size());
+        List<Long> rechazadas = new ArrayList<>();
+        for (Long id : ids) {
+            try {
+                futures.add(completion.submit(() -> {
+                    try {
+                        return ResultadoPrediccion.ok(id, imagenService.getNewPrediccion(id, esperaLimite));
+                    } catch (Exception e) {
+                        return ResultadoPrediccion.error(id, e.getMessage());
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                // Otro lote ha llenado la cola después de admitir este
+                rechazadas.add(id);
+            }
+        }
+        try {
+            for (Long id : rechazadas) {
+                receptor.recibir(ResultadoPrediccion.error(id, "Demasiadas predicciones en cola, intentelo mas tarde"));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                receptor.recibir(completion.take().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Predicción por lotes interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            // Si el cliente se desconecta no se sigue gastando el modelo en el resto del lote
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.uma.example.springuma.model;
+
+// El modelo no acepta más peticiones en este momento (cortocircuito abierto o límite de concurrencia alcanzado)
+public class PrediccionNoDisponibleException extends RuntimeException {
+
+    public PrediccionNoDisponibleException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+package com.uma.example.springuma.model;
+
+import java.util.Map;
+
+// Backend de predicción. Devuelve la puntuación de cada etiqueta (LABEL_0 = no cáncer, LABEL_1 = cáncer).
+// La implementación activa se elige con prediccion.backend: remoto (por defecto), onnx o stub
+public interface Predictor {
+
+    // Identifica el modelo; forma parte de la clave de la caché de predicciones
+    String getModelId();
+
+    Map<String, Double> query(byte[] file_data) throws Exception;
+}
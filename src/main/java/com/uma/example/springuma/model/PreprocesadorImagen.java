@@ -0,0 +1,99 @@
+package com.uma.example.springuma.model;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+// Etapa previa a la predicción: decodifica la imagen, la pasa a RGB de 8 bits, la escala al tamaño de
+// entrada del modelo y la vuelve a codificar en PNG. El clasificador trabaja a ese tamaño de todas formas,
+// así que se envían unos pocos KB en lugar de la imagen original. El resultado se guarda por hash del contenido.
+// La imagen se estira a tamano x tamano sin conservar la proporción, igual que hace el redimensionado del
+// procesador del modelo; una imagen muy alargada llega deformada
+@Component
+public class PreprocesadorImagen {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${prediccion.preprocesado.enabled:true}")
+    private boolean enabled;
+
+    @Value("${prediccion.preprocesado.tamano:224}")
+    private int tamano;
+
+    @Value("${prediccion.preprocesado.cache.max-entries:500}")
+    private int maxEntries;
+
+    private Map<String, byte[]> cache;
+
+    @PostConstruct
+    void init() {
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        meterRegistry.gauge("prediccion.preprocesado.cache.entradas", this, preprocesador -> preprocesador.size());
+    }
+
+    // Distingue en la caché de predicciones las hechas sobre la imagen preprocesada de las hechas sobre la original
+    public String getVariante() {
+        return enabled ? "@" + tamano : "";
+    }
+
+    // Devuelve la imagen preparada para el modelo. La original solo se lee si no está ya en caché
+    public byte[] preprocesar(String contentHash, OrigenImagen origen) throws IOException {
+        if (!enabled) {
+            return origen.leer();
+        }
+        synchronized (cache) {
+            byte[] cached = cache.get(contentHash);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        byte[] original = origen.leer();
+        BufferedImage imagen = ImageIO.read(new ByteArrayInputStream(original));
+        if (imagen == null) {
+            // Formato que ImageIO no sabe leer (por ejemplo DICOM): se envía tal cual
+            return original;
+        }
+        BufferedImage escalada = new BufferedImage(tamano, tamano, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = escalada.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(imagen, 0, 0, tamano, tamano, null);
+        g.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(tamano * tamano);
+        ImageIO.write(escalada, "png", out);
+        byte[] preprocesada = out.toByteArray();
+        meterRegistry.summary("prediccion.preprocesado.bytes", "tipo", "original").record(original.length);
+        meterRegistry.summary("prediccion.preprocesado.bytes", "tipo", "preprocesada").record(preprocesada.length);
+        synchronized (cache) {
+            cache.put(contentHash, preprocesada);
+        }
+        return preprocesada;
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.uma.example.springuma.model;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.uma.example.springuma.utils.AimdLimiter;
+import com.uma.example.springuma.utils.CircuitBreaker;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+// Envuelve las llamadas al modelo con un cortocircuito y un límite de concurrencia adaptativo.
+// Cuando el modelo falla o se vuelve lento se rechazan las llamadas al momento con
+// PrediccionNoDisponibleException en lugar de dejar hilos de Tomcat esperando
+@Component
+public class ProteccionPredictor {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${prediccion.circuito.max-fallos:5}")
+    private int maxFallos;
+
+    @Value("${prediccion.circuito.espera:PT30S}")
+    private Duration espera;
+
+    @Value("${prediccion.limite.inicial:10}")
+    private int limiteInicial;
+
+    @Value("${prediccion.limite.minimo:1}")
+    private int limiteMinimo;
+
+    @Value("${prediccion.limite.maximo:50}")
+    private int limiteMaximo;
+
+    @Value("${prediccion.limite.latencia-maxima:PT10S}")
+    private Duration latenciaMaxima;
+
+    private CircuitBreaker circuitBreaker;
+    private AimdLimiter limiter;
+    private Counter rechazadasCircuito;
+    private Counter rechazadasLimite;
+
+    @PostConstruct
+    void init() {
+        circuitBreaker = new CircuitBreaker(maxFallos, espera);
+        limiter = new AimdLimiter(limiteInicial, limiteMinimo, limiteMaximo, latenciaMaxima);
+        rechazadasCircuito = meterRegistry.counter("prediccion.rechazadas", "motivo", "circuito");
+        rechazadasLimite = meterRegistry.counter("prediccion.rechazadas", "motivo", "limite");
+        // 0 = cerrado, 1 = semiabierto, 2 = abierto
+        Gauge.builder("prediccion.circuito.estado", circuitBreaker, cb -> cb.getEstado().ordinal())
+            .register(meterRegistry);
+        Gauge.builder("prediccion.limite", limiter, AimdLimiter::getLimite).register(meterRegistry);
+        Gauge.builder("prediccion.limite.en_curso", limiter, AimdLimiter::getEnCurso).register(meterRegistry);
+    }
+
+    public <T> T ejecutar(Callable<T> llamada) throws Exception {
+        return ejecutar(llamada, Duration.ZERO);
+    }
+
+    // Con espera, si el límite está lleno la llamada aguarda un hueco en lugar de rechazarse al momento.
+    // Lo usan las predicciones por lotes, que no tienen un hilo de Tomcat bloqueado por cada imagen
+    public <T> T ejecutar(Callable<T> llamada, Duration esperaLimite) throws Exception {
+        if (!circuitBreaker.tryAcquire()) {
+            rechazadasCircuito.increment();
+            throw new PrediccionNoDisponibleException("El servicio de prediccion no esta disponible, intentelo mas tarde");
+        }
+        boolean admitida;
+        try {
+            admitida = limiter.acquire(esperaLimite);
+        } catch (InterruptedException e) {
+            circuitBreaker.onIgnored();
+            throw e;
+        }
+        if (!admitida) {
+            // La llamada no llega a hacerse: si era la de prueba, el cortocircuito debe poder lanzar otra
+            circuitBreaker.onIgnored();
+            rechazadasLimite.increment();
+            throw new PrediccionNoDisponibleException("Demasiadas predicciones en curso, intentelo mas tarde");
+        }
+        long inicio = System.nanoTime();
+        boolean ok = false;
+        try {
+            T resultado = llamada.call();
+            ok = true;
+            return resultado;
+        } finally {
+            limiter.release(System.nanoTime() - inicio, ok);
+            if (ok) {
+                circuitBreaker.onSuccess();
+            } else {
+                circuitBreaker.onFailure();
+            }
+        }
+    }
+
+    public CircuitBreaker.Estado getEstado() {
+        return circuitBreaker.getEstado();
+    }
+}
@@ -1,13 +1,62 @@
 package com.uma.example.springuma.model;
 
 
+import java.util.Calendar;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.uma.example.springuma.utils.ImageCodec;
 
 public interface RepositoryImagen extends JpaRepository<Imagen, Long> {
 
-    List<Imagen> getByPacienteId(Long id);
+    boolean existsByContentHash(String contentHash);
+
+    boolean existsByContentHashAndCodec(String contentHash, ImageCodec codec);
+
+    boolean existsByContentHashAndCodecIsNull(String contentHash);
+
+    // Si alguna imagen usa el blob de ese hash y codec; las filas sin codec son anteriores a él y están en deflate
+    default boolean existsBlob(String contentHash, ImageCodec codec) {
+        return existsByContentHashAndCodec(contentHash, codec)
+            || (codec == ImageCodec.DEFLATE && existsByContentHashAndCodecIsNull(contentHash));
+    }
+
+    // Blobs de las imágenes que se llevará por delante el ON DELETE CASCADE al borrar un paciente o un médico
+    @Query("select distinct new com.uma.example.springuma.model.BlobImagen(i.contentHash, i.codec)"
+        + " from Imagen i where i.paciente.id = :id and i.contentHash is not null")
+    List<BlobImagen> findBlobsByPacienteId(@Param("id") Long id);
+
+    @Query("select distinct new com.uma.example.springuma.model.BlobImagen(i.contentHash, i.codec)"
+        + " from Imagen i where i.paciente.medico.id = :id and i.contentHash is not null")
+    List<BlobImagen> findBlobsByMedicoId(@Param("id") Long id);
+
+    @Query("select i.id from Imagen i where i.paciente.id = :id order by i.id")
+    List<Long> findIdsByPacienteId(@Param("id") Long id, Limit limit);
+
+    List<Imagen> findByIdGreaterThanOrderById(long after, Limit limit);
+
+    // Imágenes de un paciente por fecha de subida; el id desempata las subidas en el mismo instante
+    @Query("select new com.uma.example.springuma.model.ImagenInfo(i.id, i.nombre, i.fecha, i.size, i.contentHash, i.paciente.id)"
+        + " from Imagen i where i.paciente.id = :id order by i.fecha, i.id")
+    List<ImagenInfo> findInfoByPacienteId(@Param("id") Long id, Limit limit);
+
+    @Query("select new com.uma.example.springuma.model.ImagenInfo(i.id, i.nombre, i.fecha, i.size, i.contentHash, i.paciente.id)"
+        + " from Imagen i where i.paciente.id = :id and (i.fecha > :fecha or (i.fecha = :fecha and i.id > :after))"
+        + " order by i.fecha, i.id")
+    List<ImagenInfo> findInfoByPacienteIdAfter(@Param("id") Long id, @Param("fecha") Calendar fecha,
+        @Param("after") long after, Limit limit);
+
+    @Query("select new com.uma.example.springuma.model.ImagenInfo(i.id, i.nombre, i.fecha, i.size, i.contentHash, i.paciente.id)"
+        + " from Imagen i where i.id = :id")
+    Optional<ImagenInfo> findInfoById(@Param("id") Long id);
+
+    @Query("select i from Imagen i where i.paciente.id = :id order by i.fecha, i.id")
+    List<Imagen> findByPacienteIdOrderByFecha(@Param("id") Long id);
 
 
     // Aquí puedes añadir métodos personalizados si es necesario.
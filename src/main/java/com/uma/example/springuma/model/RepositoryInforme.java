@@ -1,12 +1,44 @@
 package com.uma.example.springuma.model;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import jakarta.persistence.QueryHint;
 
 public interface RepositoryInforme extends JpaRepository<Informe, Long>{
 
-    List<Informe> findByImagenId(Long id);
+    // El JSON de un informe incluye su imagen, el paciente y el médico: se cargan con un único join
+    @Override
+    @EntityGraph(attributePaths = {"imagen", "imagen.paciente", "imagen.paciente.medico"})
+    Optional<Informe> findById(Long id);
+
+    // Listados paginados por clave, ordenados por id
+    @EntityGraph(attributePaths = {"imagen", "imagen.paciente", "imagen.paciente.medico"})
+    List<Informe> findByIdGreaterThanOrderById(long after, Limit limit);
+
+    // Igual que en pacientes por médico: con la consulta explícita el filtro va sobre informe.imagen_id
+    // y se usa idx_informe_imagen
+    @EntityGraph(attributePaths = {"imagen", "imagen.paciente", "imagen.paciente.medico"})
+    @Query("select i from Informe i where i.imagen.id = :id and i.id > :after order by i.id")
+    List<Informe> findByImagenIdAndIdGreaterThanOrderById(@Param("id") Long id, @Param("after") long after, Limit limit);
+
+    // Exportación: se recorre la tabla con un cursor que trae las filas de 500 en 500, sin instantáneas
+    // para detectar cambios y sin pasar por la caché de segundo nivel. Hay que consumirlo dentro de una transacción
+    @EntityGraph(attributePaths = {"imagen", "imagen.paciente", "imagen.paciente.medico"})
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")})
+    Stream<Informe> streamAllByOrderById();
 
     // https://docs.spring.io/spring-data/jpa/docs/current/reference/html/#repositories.query-methods.query-creation
 	// Además de los metodos de consulta basicos, especifico un metodo que busque una cuenta por el CCC
@@ -1,9 +1,26 @@
 package com.uma.example.springuma.model;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import jakarta.persistence.QueryHint;
 
 public interface RepositoryMedico extends JpaRepository<Medico, Long>{
 
+    // El resultado se guarda en la caché de consultas; el médico en sí sale de la caché de segundo nivel
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Medico getMedicoByDni(String dni);
 
+    List<Medico> findByIdGreaterThanOrderById(long after, Limit limit);
+
+    // DNIs de la lista que ya están dados de alta (importación por lotes)
+    @Query("select m.dni from Medico m where m.dni in :dnis")
+    List<String> findDnisExistentes(Collection<String> dnis);
+
 }
\ No newline at end of file
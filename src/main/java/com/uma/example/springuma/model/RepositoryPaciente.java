@@ -1,13 +1,51 @@
 package com.uma.example.springuma.model;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import jakarta.persistence.QueryHint;
 
 public interface RepositoryPaciente extends JpaRepository<Paciente, Long> {
 
+    // El médico se devuelve siempre junto al paciente, así que se trae en la misma consulta
+    @Override
+    @EntityGraph(attributePaths = "medico")
+    Optional<Paciente> findById(Long id);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Paciente findByDni(String dni);
 
-    List<Paciente> findByMedicoId(Long id);
+    // Listados paginados por clave, ordenados por id
+    @EntityGraph(attributePaths = "medico")
+    List<Paciente> findByIdGreaterThanOrderById(long after, Limit limit);
+
+    // Consulta explícita: derivada del nombre y con el EntityGraph, el filtro caía sobre el id del médico
+    // unido en lugar de sobre paciente.medico_id y no se usaba idx_paciente_medico
+    @EntityGraph(attributePaths = "medico")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("select p from Paciente p where p.medico.id = :id and p.id > :after order by p.id")
+    List<Paciente> findByMedicoIdAndIdGreaterThanOrderById(@Param("id") Long id, @Param("after") long after, Limit limit);
+
+    // DNIs de la lista que ya están dados de alta (importación por lotes)
+    @Query("select p.dni from Paciente p where p.dni in :dnis")
+    List<String> findDnisExistentes(Collection<String> dnis);
+
+    // Exportación: cursor de solo lectura que trae las filas de 500 en 500 (ver RepositoryInforme)
+    @EntityGraph(attributePaths = "medico")
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")})
+    Stream<Paciente> streamAllByOrderById();
 
 }
@@ -0,0 +1,17 @@
+package com.uma.example.springuma.model;
+
+import java.util.Calendar;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface RepositoryPrediccion extends JpaRepository<Prediccion, String> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from Prediccion p where p.fecha < :limite")
+    int deleteByFechaBefore(@Param("limite") Calendar limite);
+}
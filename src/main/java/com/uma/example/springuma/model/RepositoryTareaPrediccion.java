@@ -0,0 +1,31 @@
+package com.uma.example.springuma.model;
+
+import java.util.Calendar;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface RepositoryTareaPrediccion extends JpaRepository<TareaPrediccion, Long> {
+
+    // Consulta explícita: la derivada del nombre hacía un join con informe y filtraba por su id, recorriendo
+    // la tabla de tareas en lugar de usar idx_tarea_prediccion_informe
+    @Query("select t from TareaPrediccion t where t.informe.id = :informeId order by t.id desc limit 1")
+    TareaPrediccion findFirstByInformeIdOrderByIdDesc(@Param("informeId") Long informeId);
+
+    @Query("select t.id from TareaPrediccion t where t.estado = :estado and t.siguienteIntento <= :ahora order by t.siguienteIntento")
+    List<Long> findIdsListas(@Param("estado") EstadoTarea estado, @Param("ahora") Calendar ahora, Limit limit);
+
+    // Reserva la tarea hasta la fecha indicada solo si sigue como se leyó (mismo estado y lista para procesar),
+    // para que nunca la tomen dos trabajadores, ni siquiera desde instancias distintas
+    @Transactional
+    @Modifying
+    @Query("update TareaPrediccion t set t.estado = com.uma.example.springuma.model.EstadoTarea.EN_CURSO,"
+        + " t.siguienteIntento = :hasta where t.id = :id and t.estado = :actual and t.siguienteIntento <= :ahora")
+    int reservar(@Param("id") Long id, @Param("actual") EstadoTarea actual, @Param("ahora") Calendar ahora,
+        @Param("hasta") Calendar hasta);
+}
@@ -0,0 +1,15 @@
+package com.uma.example.springuma.model;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Resumen de una importación masiva. Solo se guardan las primeras importacion.max-errores filas rechazadas:
+// si rechazadas es mayor que errores.size() la lista está truncada
+public record ResultadoImportacion(long filas, long importadas, long rechazadas, List<ErrorFila> errores) {
+
+    // Fila rechazada, con su número de línea en el fichero (la cabecera del CSV es la línea 1)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ErrorFila(long linea, String dni, String error) {
+    }
+}
@@ -0,0 +1,16 @@
+package com.uma.example.springuma.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Resultado de una imagen dentro de una predicción por lotes: o bien la predicción o bien el error
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ResultadoPrediccion(long id, String prediction, String error) {
+
+    public static ResultadoPrediccion ok(long id, String prediction) {
+        return new ResultadoPrediccion(id, prediction, null);
+    }
+
+    public static ResultadoPrediccion error(long id, String error) {
+        return new ResultadoPrediccion(id, null, error);
+    }
+}
@@ -0,0 +1,46 @@
+package com.uma.example.springuma.model;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Predictor falso para pruebas de carga y entornos sin modelo. Espera la latencia configurada y devuelve
+// una puntuación fija o, si no se configura, una derivada del contenido (la misma imagen da siempre lo mismo)
+@Component
+@ConditionalOnProperty(name = "prediccion.backend", havingValue = "stub")
+public class StubPredictor implements Predictor {
+
+    @Value("${prediccion.stub.latencia:PT0S}")
+    private Duration latencia;
+
+    // Puntuación de LABEL_1; un valor negativo hace que se calcule a partir del contenido
+    @Value("${prediccion.stub.puntuacion:-1}")
+    private double puntuacion;
+
+    @Override
+    public String getModelId() {
+        return "stub";
+    }
+
+    @Override
+    public Map<String, Double> query(byte[] file_data) throws Exception {
+        if (!latencia.isZero()) {
+            Thread.sleep(latencia.toMillis());
+        }
+        double score_1 = puntuacion;
+        if (score_1 < 0) {
+            CRC32 crc = new CRC32();
+            crc.update(file_data);
+            score_1 = (crc.getValue() % 1000) / 1000.0;
+        }
+        Map<String, Double> resultMap = new HashMap<>();
+        resultMap.put("LABEL_0", 1.0 - score_1);
+        resultMap.put("LABEL_1", score_1);
+        return resultMap;
+    }
+}
@@ -0,0 +1,104 @@
+package com.uma.example.springuma.model;
+
+import java.util.Calendar;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import jakarta.persistence.*;
+
+// Predicción pendiente de un informe creado en modo asíncrono. Al estar en la base de datos,
+// las tareas que no han terminado se retoman después de un reinicio
+@Entity
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler", "informe"})
+// El trabajador busca por estado y fecha del siguiente intento; el estado de un informe, por informe_id
+@Table(indexes = {
+    @Index(name = "idx_tarea_prediccion_informe", columnList = "informe_id, id"),
+    @Index(name = "idx_tarea_prediccion_estado", columnList = "estado, siguiente_intento")})
+public class TareaPrediccion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tarea_prediccion_seq")
+    @SequenceGenerator(name = "tarea_prediccion_seq", sequenceName = "tarea_prediccion_seq", allocationSize = 50)
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "informe_id")
+    private Informe informe;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", length = 16)
+    private EstadoTarea estado;
+
+    @Column(name = "intentos")
+    private int intentos;
+
+    // La tarea no se vuelve a intentar antes de esta fecha. Mientras está EN_CURSO es el final de la reserva
+    // del trabajador que la procesa: si llega sin que la tarea haya terminado, otro la retoma
+    @Column(name = "siguiente_intento")
+    private Calendar siguienteIntento;
+
+    @Column(name = "error", length = 1000)
+    private String error;
+
+    public TareaPrediccion() {
+        // Constructor vacío necesario para JPA
+    }
+
+    public TareaPrediccion(Informe informe) {
+        this.informe = informe;
+        this.estado = EstadoTarea.PENDIENTE;
+        this.siguienteIntento = Calendar.getInstance();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public Informe getInforme() {
+        return informe;
+    }
+
+    public void setInforme(Informe informe) {
+        this.informe = informe;
+    }
+
+    public EstadoTarea getEstado() {
+        return estado;
+    }
+
+    public void setEstado(EstadoTarea estado) {
+        this.estado = estado;
+    }
+
+    public int getIntentos() {
+        return intentos;
+    }
+
+    public void setIntentos(int intentos) {
+        this.intentos = intentos;
+    }
+
+    public Calendar getSiguienteIntento() {
+        return siguienteIntento;
+    }
+
+    public void setSiguienteIntento(Calendar siguienteIntento) {
+        this.siguienteIntento = siguienteIntento;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
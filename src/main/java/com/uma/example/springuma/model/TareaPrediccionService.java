@@ -0,0 +1,142 @@
+package com.uma.example.springuma.model;
+
+import java.time.Duration;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Cola de predicciones de los informes creados en modo asíncrono. Las tareas se guardan en la tabla
+// tarea_prediccion y un grupo acotado de trabajadores las va procesando, reintentando con espera
+// exponencial las que fallan hasta prediccion.tareas.max-intentos. Cada tarea en curso está reservada durante
+// prediccion.tareas.reserva; si el trabajador o la instancia caen antes de terminarla, al caducar la reserva
+// vuelve a procesarse
+@Service
+public class TareaPrediccionService {
+
+    @Autowired
+    private RepositoryTareaPrediccion repositoryTarea;
+
+    @Autowired
+    private RepositoryInforme repositoryInforme;
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Value("${prediccion.tareas.trabajadores:4}")
+    private int trabajadores;
+
+    @Value("${prediccion.tareas.max-intentos:5}")
+    private int maxIntentos;
+
+    @Value("${prediccion.tareas.espera-inicial:PT10S}")
+    private Duration esperaInicial;
+
+    // Debe ser mayor que lo que puede tardar una predicción, incluidos los tiempos de espera del cliente HTTP
+    @Value("${prediccion.tareas.reserva:PT5M}")
+    private Duration reserva;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        // Cola del mismo tamaño que el número de trabajadores: nunca se reservan más tareas de las que se pueden atender
+        executor = new ThreadPoolExecutor(trabajadores, trabajadores, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(trabajadores), new CustomizableThreadFactory("prediccion-"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public TareaPrediccion encolar(Informe informe) {
+        return repositoryTarea.save(new TareaPrediccion(informe));
+    }
+
+    public List<TareaPrediccion> encolar(List<Informe> informes) {
+        return repositoryTarea.saveAll(informes.stream().map(TareaPrediccion::new).toList());
+    }
+
+    public TareaPrediccion getTareaInforme(Long informeId) {
+        return repositoryTarea.findFirstByInformeIdOrderByIdDesc(informeId);
+    }
+
+    // Primero las pendientes y, si quedan trabajadores libres, las en curso cuya reserva ha caducado
+    @Scheduled(fixedDelayString = "${prediccion.tareas.intervalo:1000}")
+    public void procesarPendientes() {
+        for (EstadoTarea estado : List.of(EstadoTarea.PENDIENTE, EstadoTarea.EN_CURSO)) {
+            int libres = executor.getMaximumPoolSize() - executor.getActiveCount() - executor.getQueue().size();
+            if (libres <= 0) {
+                return;
+            }
+            Calendar ahora = Calendar.getInstance();
+            Calendar hasta = Calendar.getInstance();
+            hasta.setTimeInMillis(ahora.getTimeInMillis() + reserva.toMillis());
+            for (Long id : repositoryTarea.findIdsListas(estado, ahora, Limit.of(libres))) {
+                if (repositoryTarea.reservar(id, estado, ahora, hasta) == 1) {
+                    executor.execute(() -> procesar(id));
+                }
+            }
+        }
+    }
+
+    // Cualquier fallo, también al leer o guardar la tarea, la devuelve a la cola con espera exponencial.
+    // Si ni siquiera se puede leer o guardar, la tarea se retoma cuando caduque su reserva
+    private void procesar(Long id) {
+        TareaPrediccion tarea = null;
+        try {
+            tarea = repositoryTarea.findById(id).orElse(null);
+            if (tarea == null) {
+                return;
+            }
+            Informe informe = repositoryInforme.findById(tarea.getInforme().getId()).orElse(null);
+            if (informe == null) {
+                repositoryTarea.delete(tarea);
+                return;
+            }
+            informe.setPrediccion(imagenService.getNewPrediccion(informe.getImagen().getId()));
+            repositoryInforme.save(informe);
+            tarea.setEstado(EstadoTarea.COMPLETADA);
+            tarea.setError(null);
+            repositoryTarea.save(tarea);
+        } catch (Exception e) {
+            if (tarea != null) {
+                reintentar(tarea, e);
+            } else {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void reintentar(TareaPrediccion tarea, Exception causa) {
+        tarea.setIntentos(tarea.getIntentos() + 1);
+        // La columna error admite 1000 caracteres
+        String error = causa.getMessage();
+        tarea.setError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+        if (tarea.getIntentos() >= maxIntentos) {
+            tarea.setEstado(EstadoTarea.FALLIDA);
+        } else {
+            Calendar siguiente = Calendar.getInstance();
+            siguiente.add(Calendar.MILLISECOND, (int) (esperaInicial.toMillis() << (tarea.getIntentos() - 1)));
+            tarea.setSiguienteIntento(siguiente);
+            tarea.setEstado(EstadoTarea.PENDIENTE);
+        }
+        try {
+            repositoryTarea.save(tarea);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
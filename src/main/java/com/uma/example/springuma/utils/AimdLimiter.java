@@ -0,0 +1,64 @@
+package com.uma.example.springuma.utils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Límite de llamadas concurrentes que se ajusta solo (AIMD): sube de uno en uno mientras las llamadas
+// van bien y usan el límite, y se reduce a la mitad cuando una falla o tarda más de la latencia máxima
+public class AimdLimiter {
+
+    private final int minimo;
+    private final int maximo;
+    private final long latenciaMaximaNanos;
+
+    private double limite;
+    private int enCurso;
+
+    public AimdLimiter(int inicial, int minimo, int maximo, Duration latenciaMaxima) {
+        this.limite = inicial;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.latenciaMaximaNanos = latenciaMaxima.toNanos();
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (enCurso >= (int) limite) {
+            return false;
+        }
+        enCurso++;
+        return true;
+    }
+
+    // Como tryAcquire, pero si el límite está lleno espera como mucho el tiempo indicado a que se libere un hueco
+    public synchronized boolean acquire(Duration espera) throws InterruptedException {
+        long fin = System.nanoTime() + espera.toNanos();
+        while (enCurso >= (int) limite) {
+            long restante = fin - System.nanoTime();
+            if (restante <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, restante);
+        }
+        enCurso++;
+        return true;
+    }
+
+    public synchronized void release(long latenciaNanos, boolean ok) {
+        if (!ok || latenciaNanos > latenciaMaximaNanos) {
+            limite = Math.max(minimo, limite / 2);
+        } else if (enCurso * 2 >= limite) {
+            // Solo se amplía si la carga está cerca del límite; si no, no hay información para subirlo
+            limite = Math.min(maximo, limite + 1);
+        }
+        enCurso--;
+        notifyAll();
+    }
+
+    public synchronized int getLimite() {
+        return (int) limite;
+    }
+
+    public synchronized int getEnCurso() {
+        return enCurso;
+    }
+}
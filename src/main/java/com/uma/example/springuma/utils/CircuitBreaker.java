@@ -0,0 +1,77 @@
+package com.uma.example.springuma.utils;
+
+import java.time.Duration;
+
+// Cortocircuito para llamadas a un servicio externo. Tras un número de fallos seguidos se abre y rechaza
+// las llamadas sin intentarlas; pasado el tiempo de espera deja pasar una llamada de prueba (semiabierto)
+// y vuelve a cerrarse si sale bien o a abrirse si falla
+public class CircuitBreaker {
+
+    public enum Estado {
+        CERRADO,
+        SEMIABIERTO,
+        ABIERTO
+    }
+
+    private final int maxFallos;
+    private final long esperaNanos;
+
+    private Estado estado = Estado.CERRADO;
+    private int fallosSeguidos;
+    private long abiertoDesde;
+    private boolean pruebaEnCurso;
+
+    public CircuitBreaker(int maxFallos, Duration espera) {
+        this.maxFallos = maxFallos;
+        this.esperaNanos = espera.toNanos();
+    }
+
+    // Indica si la llamada puede hacerse; si devuelve true hay que informar después con onSuccess u onFailure
+    public synchronized boolean tryAcquire() {
+        if (estado == Estado.ABIERTO && System.nanoTime() - abiertoDesde >= esperaNanos) {
+            estado = Estado.SEMIABIERTO;
+        }
+        switch (estado) {
+            case CERRADO:
+                return true;
+            case SEMIABIERTO:
+                if (pruebaEnCurso) {
+                    return false;
+                }
+                pruebaEnCurso = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Solo la llamada de prueba cierra el cortocircuito. Una llamada admitida cuando estaba cerrado puede terminar
+    // bien después de que otros fallos lo hayan abierto, y eso no dice nada de si el servicio se ha recuperado
+    public synchronized void onSuccess() {
+        if (estado == Estado.SEMIABIERTO && pruebaEnCurso) {
+            estado = Estado.CERRADO;
+            fallosSeguidos = 0;
+            pruebaEnCurso = false;
+        } else if (estado == Estado.CERRADO) {
+            fallosSeguidos = 0;
+        }
+    }
+
+    public synchronized void onFailure() {
+        fallosSeguidos++;
+        if (estado == Estado.SEMIABIERTO || fallosSeguidos >= maxFallos) {
+            estado = Estado.ABIERTO;
+            abiertoDesde = System.nanoTime();
+        }
+        pruebaEnCurso = false;
+    }
+
+    // La llamada autorizada no se ha llegado a hacer; no cuenta como éxito ni como fallo
+    public synchronized void onIgnored() {
+        pruebaEnCurso = false;
+    }
+
+    public synchronized Estado getEstado() {
+        return estado;
+    }
+}
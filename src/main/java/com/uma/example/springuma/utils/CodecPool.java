@@ -0,0 +1,62 @@
+package com.uma.example.springuma.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Reserva de Deflater/Inflater reutilizables. Cada uno reserva memoria nativa que solo se libera con end(),
+// así que se reinician al devolverlos y se liberan explícitamente cuando la reserva está llena.
+// También guarda por hilo los buffers de trabajo para no crear arrays nuevos en cada llamada
+public final class CodecPool {
+
+    public static final int BUFFER_SIZE = 8*1024;
+
+    private static final int MAX_POOLED = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final BlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(MAX_POOLED);
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(MAX_POOLED);
+
+    private static final ThreadLocal<byte[]> INPUT_BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+    private static final ThreadLocal<byte[]> OUTPUT_BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private CodecPool() {
+    }
+
+    public static Deflater acquireDeflater(int level) {
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            deflater = new Deflater();
+        }
+        deflater.setLevel(level);
+        return deflater;
+    }
+
+    public static void release(Deflater deflater) {
+        deflater.reset();
+        if (!DEFLATERS.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    public static Inflater acquireInflater() {
+        Inflater inflater = INFLATERS.poll();
+        return inflater != null ? inflater : new Inflater();
+    }
+
+    public static void release(Inflater inflater) {
+        inflater.reset();
+        if (!INFLATERS.offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    // Buffers de trabajo del hilo actual. No deben guardarse ni usarse fuera de la llamada que los pide
+    static byte[] inputBuffer() {
+        return INPUT_BUFFER.get();
+    }
+
+    static byte[] outputBuffer() {
+        return OUTPUT_BUFFER.get();
+    }
+}
@@ -0,0 +1,36 @@
+package com.uma.example.springuma.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Cursor opaco de la paginación por clave: los valores de la clave de ordenación de la última fila
+// devuelta, codificados en base64 url. El cliente solo tiene que devolverlo tal cual
+public final class Cursor {
+
+    private Cursor() {
+    }
+
+    public static String encode(long... valores) {
+        StringBuilder sb = new StringBuilder();
+        for (long valor : valores) {
+            if (sb.length() > 0) {
+                sb.append(':');
+            }
+            sb.append(valor);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Lanza IllegalArgumentException si el cursor no es válido o no tiene el número de valores esperado
+    public static long[] decode(String cursor, int partes) {
+        String[] valores = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split(":");
+        if (valores.length != partes) {
+            throw new IllegalArgumentException("Cursor no valido: " + cursor);
+        }
+        long[] result = new long[partes];
+        for (int i = 0; i < partes; i++) {
+            result[i] = Long.parseLong(valores[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,9 @@
+package com.uma.example.springuma.utils;
+
+// Cómo está codificado el contenido guardado en el BlobStore
+public enum ImageCodec {
+    // Bytes originales sin tocar, para formatos que ya vienen comprimidos
+    NONE,
+    // Flujo zlib generado con Deflater
+    DEFLATE
+}
@@ -0,0 +1,66 @@
+package com.uma.example.springuma.utils;
+
+import java.util.zip.Deflater;
+
+// Formatos de imagen que se reconocen por su cabecera, junto con el codec y nivel con el que se guardan.
+// PNG y JPEG ya están comprimidos y volver a pasarles deflate apenas ahorra espacio
+public enum ImageFormat {
+    PNG("image/png", ImageCodec.NONE, 0),
+    JPEG("image/jpeg", ImageCodec.NONE, 0),
+    DICOM("application/dicom", ImageCodec.DEFLATE, Deflater.DEFAULT_COMPRESSION),
+    TIFF("image/tiff", ImageCodec.DEFLATE, Deflater.DEFAULT_COMPRESSION),
+    UNKNOWN("application/octet-stream", ImageCodec.DEFLATE, Deflater.BEST_COMPRESSION);
+
+    // Bytes necesarios para reconocer cualquiera de los formatos (DICOM tiene 128 bytes de preámbulo)
+    public static final int HEADER_LENGTH = 132;
+
+    private final String mediaType;
+    private final ImageCodec codec;
+    private final int level;
+
+    ImageFormat(String mediaType, ImageCodec codec, int level) {
+        this.mediaType = mediaType;
+        this.codec = codec;
+        this.level = level;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public ImageCodec getCodec() {
+        return codec;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public static ImageFormat detect(byte[] header, int length) {
+        if (startsWith(header, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return PNG;
+        }
+        if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) {
+            return JPEG;
+        }
+        if (startsWith(header, length, 'I', 'I', 0x2A, 0x00) || startsWith(header, length, 'M', 'M', 0x00, 0x2A)) {
+            return TIFF;
+        }
+        if (length >= 132 && header[128] == 'D' && header[129] == 'I' && header[130] == 'C' && header[131] == 'M') {
+            return DICOM;
+        }
+        return UNKNOWN;
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
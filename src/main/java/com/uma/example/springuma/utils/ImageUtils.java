@@ -1,47 +1,190 @@
 package com.uma.example.springuma.utils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
 
+// Los Deflater/Inflater y los buffers de trabajo salen de CodecPool, nunca se crean por llamada
 public class ImageUtils {
 
 
     public static byte[] compressImage(byte[] data) {
-        Deflater deflater = new Deflater();
-        deflater.setLevel(Deflater.BEST_COMPRESSION);
-        deflater.setInput(data);
-        deflater.finish();
+        byte[] output = new byte[maxCompressedLength(data.length)];
+        try {
+            int size = compress(ByteBuffer.wrap(data), ByteBuffer.wrap(output), Deflater.BEST_COMPRESSION);
+            return Arrays.copyOf(output, size);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
-        byte[] tmp = new byte[4*1024];
-        while (!deflater.finished()) {
-            int size = deflater.deflate(tmp);
-            outputStream.write(tmp, 0, size);
+    // Cota superior del tamaño comprimido (la misma que compressBound de zlib)
+    public static int maxCompressedLength(int length) {
+        return length + (length >> 12) + (length >> 14) + (length >> 25) + 13;
+    }
+
+    // Reconoce el formato por la cabecera sin consumir el flujo, que debe soportar mark/reset
+    public static ImageFormat detectFormat(InputStream in) throws IOException {
+        byte[] header = new byte[ImageFormat.HEADER_LENGTH];
+        in.mark(header.length);
+        int length = in.readNBytes(header, 0, header.length);
+        in.reset();
+        return ImageFormat.detect(header, length);
+    }
+
+    // Codifica el flujo de entrada por bloques sobre la salida, sin cargar la imagen entera en memoria.
+    // Con NONE los bytes se copian tal cual. Devuelve el número de bytes leídos, es decir, el tamaño original
+    public static long compressImage(InputStream in, OutputStream out, ImageCodec codec, int level) throws IOException {
+        if (codec == ImageCodec.NONE) {
+            return in.transferTo(out);
         }
+        Deflater deflater = CodecPool.acquireDeflater(level);
+        byte[] input = CodecPool.inputBuffer();
+        byte[] output = CodecPool.outputBuffer();
         try {
-            outputStream.close();
-        } catch (Exception ignored) {
+            long total = 0;
+            int count;
+            while ((count = in.read(input)) >= 0) {
+                deflater.setInput(input, 0, count);
+                while (!deflater.needsInput()) {
+                    out.write(output, 0, deflater.deflate(output));
+                }
+                total += count;
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.write(output, 0, deflater.deflate(output));
+            }
+            return total;
+        } finally {
+            CodecPool.release(deflater);
         }
-        return outputStream.toByteArray();
     }
 
+    // Comprime src en dst, que puede ser un buffer directo, sin copias intermedias.
+    // dst debe tener al menos maxCompressedLength(src.remaining()) bytes libres
+    public static int compress(ByteBuffer src, ByteBuffer dst, int level) throws IOException {
+        Deflater deflater = CodecPool.acquireDeflater(level);
+        try {
+            int start = dst.position();
+            deflater.setInput(src);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (!dst.hasRemaining()) {
+                    throw new IOException("Buffer de salida insuficiente");
+                }
+                deflater.deflate(dst);
+            }
+            return dst.position() - start;
+        } finally {
+            CodecPool.release(deflater);
+        }
+    }
 
+    // Descomprime src en dst hasta llenarlo o terminar el flujo. Devuelve los bytes escritos
+    public static int decompress(ByteBuffer src, ByteBuffer dst) throws IOException {
+        Inflater inflater = CodecPool.acquireInflater();
+        try {
+            int start = dst.position();
+            inflater.setInput(src);
+            while (dst.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(dst) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EOFException("Imagen comprimida truncada");
+                }
+            }
+            return dst.position() - start;
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            CodecPool.release(inflater);
+        }
+    }
 
     public static byte[] decompressImage(byte[] data) {
-        Inflater inflater = new Inflater();
+        Inflater inflater = CodecPool.acquireInflater();
         inflater.setInput(data);
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
-        byte[] tmp = new byte[4*1024];
+        byte[] tmp = CodecPool.outputBuffer();
         try {
             while (!inflater.finished()) {
                 int count = inflater.inflate(tmp);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
                 outputStream.write(tmp, 0, count);
             }
-            outputStream.close();
         } catch (Exception ignored) {
+        } finally {
+            CodecPool.release(inflater);
         }
         return outputStream.toByteArray();
     }
 
+    // Con el tamaño original guardado se reserva el array exacto en lugar de ir agrandando un buffer
+    public static byte[] decompressImage(byte[] data, int size) throws IOException {
+        return decompressImage(ByteBuffer.wrap(data), size);
+    }
+
+    // Descomprime un buffer (por ejemplo un blob proyectado en memoria) en un array de tamaño exacto
+    public static byte[] decompressImage(ByteBuffer data, int size) throws IOException {
+        byte[] result = new byte[size];
+        int count = decompress(data, ByteBuffer.wrap(result));
+        if (count < size) {
+            throw new EOFException("Imagen comprimida truncada");
+        }
+        return result;
+    }
+
+    // Descomprime el flujo de entrada directamente sobre la salida, escribiendo solo los bytes
+    // del rango [offset, offset + length) de la imagen original sin materializarla en memoria
+    public static long decompressImage(InputStream in, OutputStream out, long offset, long length) throws IOException {
+        Inflater inflater = CodecPool.acquireInflater();
+        byte[] input = CodecPool.inputBuffer();
+        byte[] output = CodecPool.outputBuffer();
+        try {
+            long skip = offset;
+            long remaining = length;
+            while (remaining > 0 && !inflater.finished()) {
+                if (inflater.needsInput()) {
+                    int read = in.read(input);
+                    if (read < 0) {
+                        throw new EOFException("Imagen comprimida truncada");
+                    }
+                    inflater.setInput(input, 0, read);
+                }
+                int count = inflater.inflate(output);
+                if (count == 0 && inflater.needsDictionary()) {
+                    throw new IOException("Imagen comprimida con diccionario no soportada");
+                }
+                int from = (int) Math.min(skip, count);
+                skip -= from;
+                int write = (int) Math.min(count - from, remaining);
+                if (write > 0) {
+                    out.write(output, from, write);
+                    remaining -= write;
+                }
+            }
+            if (skip > 0) {
+                throw new EOFException("El rango empieza después del final de la imagen");
+            }
+            return length - remaining;
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            CodecPool.release(inflater);
+        }
+    }
+
+    // Calcula el tamaño descomprimido recorriendo el flujo sin guardar los datos
+    public static long decompressedLength(InputStream in) throws IOException {
+        return decompressImage(in, OutputStream.nullOutputStream(), 0, Long.MAX_VALUE);
+    }
+
 }
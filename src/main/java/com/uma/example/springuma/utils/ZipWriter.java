@@ -0,0 +1,130 @@
+package com.uma.example.springuma.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+// Escritor de ZIP para entradas cuyo contenido ya está comprimido en deflate (o va sin comprimir).
+// A diferencia de ZipOutputStream no vuelve a comprimir nada: el CRC y los tamaños se conocen de antemano,
+// así que van en la cabecera local y los datos se copian tal cual, y la longitud total se puede calcular
+// antes de escribir. Sin ZIP64: cada entrada y el archivo completo deben quedar por debajo de 4 GB
+public class ZipWriter {
+
+    private static final int LOCAL_HEADER = 30;
+    private static final int CENTRAL_HEADER = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY = 22;
+    private static final int VERSION = 20;
+    // Bit 11: el nombre de la entrada va en UTF-8
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    // Copia los datos de una entrada en la salida y devuelve los bytes escritos, que deben ser tamanoComprimido
+    @FunctionalInterface
+    public interface Contenido {
+        long escribir(OutputStream out) throws IOException;
+    }
+
+    // Con comprimida=true el contenido es deflate sin envoltorio zlib; si no, los bytes originales
+    public record Entrada(String nombre, long fecha, boolean comprimida, long crc, long tamanoComprimido,
+            long tamano, Contenido contenido) {
+
+        byte[] nombreUtf8() {
+            return nombre.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    // Tamaño exacto del archivo, para enviarlo en Content-Length
+    public static long longitud(List<Entrada> entradas) {
+        long total = END_OF_CENTRAL_DIRECTORY;
+        for (Entrada entrada : entradas) {
+            int nombre = entrada.nombreUtf8().length;
+            total += LOCAL_HEADER + nombre + entrada.tamanoComprimido() + CENTRAL_HEADER + nombre;
+        }
+        return total;
+    }
+
+    public static void escribir(List<Entrada> entradas, OutputStream out) throws IOException {
+        if (entradas.size() > 0xFFFF || longitud(entradas) > 0xFFFFFFFFL) {
+            throw new IOException("El archivo necesitaría ZIP64");
+        }
+        long[] offsets = new long[entradas.size()];
+        long offset = 0;
+        for (int i = 0; i < entradas.size(); i++) {
+            Entrada entrada = entradas.get(i);
+            byte[] nombre = entrada.nombreUtf8();
+            offsets[i] = offset;
+            ByteBuffer header = buffer(LOCAL_HEADER + nombre.length)
+                .putInt(0x04034b50)
+                .putShort((short) VERSION);
+            comunes(header, entrada, nombre).put(nombre);
+            out.write(header.array());
+            if (entrada.contenido().escribir(out) != entrada.tamanoComprimido()) {
+                throw new IOException("El contenido de " + entrada.nombre() + " no coincide con su tamaño");
+            }
+            offset += LOCAL_HEADER + nombre.length + entrada.tamanoComprimido();
+        }
+
+        long inicioDirectorio = offset;
+        for (int i = 0; i < entradas.size(); i++) {
+            Entrada entrada = entradas.get(i);
+            byte[] nombre = entrada.nombreUtf8();
+            ByteBuffer header = buffer(CENTRAL_HEADER + nombre.length)
+                .putInt(0x02014b50)
+                .putShort((short) VERSION)
+                .putShort((short) VERSION);
+            comunes(header, entrada, nombre)
+                .putShort((short) 0)  // comentario
+                .putShort((short) 0)  // disco
+                .putShort((short) 0)  // atributos internos
+                .putInt(0)            // atributos externos
+                .putInt((int) offsets[i])
+                .put(nombre);
+            out.write(header.array());
+            offset += CENTRAL_HEADER + nombre.length;
+        }
+
+        ByteBuffer fin = buffer(END_OF_CENTRAL_DIRECTORY)
+            .putInt(0x06054b50)
+            .putShort((short) 0)
+            .putShort((short) 0)
+            .putShort((short) entradas.size())
+            .putShort((short) entradas.size())
+            .putInt((int) (offset - inicioDirectorio))
+            .putInt((int) inicioDirectorio)
+            .putShort((short) 0);
+        out.write(fin.array());
+        out.flush();
+    }
+
+    // Campos que comparten la cabecera local y la del directorio central, desde los flags hasta el extra
+    private static ByteBuffer comunes(ByteBuffer header, Entrada entrada, byte[] nombre) {
+        if (entrada.tamanoComprimido() > 0xFFFFFFFFL || entrada.tamano() > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Entrada demasiado grande sin ZIP64: " + entrada.nombre());
+        }
+        LocalDateTime fecha = LocalDateTime.ofInstant(Instant.ofEpochMilli(entrada.fecha()), ZoneId.systemDefault());
+        if (fecha.getYear() < 1980) {
+            fecha = LocalDateTime.of(1980, 1, 1, 0, 0);
+        }
+        return header
+            .putShort((short) FLAG_UTF8)
+            .putShort((short) (entrada.comprimida() ? DEFLATED : STORED))
+            .putShort((short) ((fecha.getHour() << 11) | (fecha.getMinute() << 5) | (fecha.getSecond() / 2)))
+            .putShort((short) (((fecha.getYear() - 1980) << 9) | (fecha.getMonthValue() << 5) | fecha.getDayOfMonth()))
+            .putInt((int) entrada.crc())
+            .putInt((int) entrada.tamanoComprimido())
+            .putInt((int) entrada.tamano())
+            .putShort((short) nombre.length)
+            .putShort((short) 0);
+    }
+
+    private static ByteBuffer buffer(int length) {
+        return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
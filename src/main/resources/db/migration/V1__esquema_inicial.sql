@@ -0,0 +1,77 @@
+-- Esquema de partida, el mismo que generaba ddl-auto=update. Todas las sentencias son idempotentes:
+-- en una base de datos creada antes de Flyway (baseline 0) solo se añade lo que falte
+
+create sequence if not exists imagen_seq start with 1 increment by 50;
+create sequence if not exists informe_seq start with 1 increment by 50;
+create sequence if not exists medico_seq start with 1 increment by 50;
+create sequence if not exists paciente_seq start with 1 increment by 50;
+create sequence if not exists tarea_prediccion_seq start with 1 increment by 50;
+
+create table if not exists medico (
+    id bigint not null,
+    dni varchar(255) unique,
+    especialidad varchar(255),
+    nombre varchar(255),
+    primary key (id)
+);
+
+create table if not exists paciente (
+    edad integer,
+    id bigint not null,
+    medico_id bigint,
+    cita varchar(255),
+    dni varchar(255) unique,
+    nombre varchar(255),
+    primary key (id)
+);
+
+create table if not exists imagen (
+    crc32 bigint,
+    fecha timestamp(6),
+    file_size bigint,
+    id bigint not null,
+    paciente_id bigint,
+    codec varchar(16) check (codec in ('NONE','DEFLATE')),
+    formato varchar(16) check (formato in ('PNG','JPEG','DICOM','TIFF','UNKNOWN')),
+    content_hash varchar(64),
+    nombre varchar(255),
+    primary key (id)
+);
+
+-- Columnas que se fueron añadiendo a imagen; una tabla antigua puede no tener alguna
+alter table imagen add column if not exists content_hash varchar(64);
+alter table imagen add column if not exists file_size bigint;
+alter table imagen add column if not exists formato varchar(16) check (formato in ('PNG','JPEG','DICOM','TIFF','UNKNOWN'));
+alter table imagen add column if not exists codec varchar(16) check (codec in ('NONE','DEFLATE'));
+alter table imagen add column if not exists crc32 bigint;
+
+create table if not exists informe (
+    id bigint not null,
+    imagen_id bigint,
+    contenido TEXT,
+    prediccion varchar(255),
+    primary key (id)
+);
+
+create table if not exists prediccion (
+    fecha timestamp(6),
+    clave varchar(200) not null,
+    resultado varchar(255),
+    primary key (clave)
+);
+
+create table if not exists tarea_prediccion (
+    intentos integer,
+    id bigint not null,
+    informe_id bigint,
+    siguiente_intento timestamp(6),
+    estado varchar(16) check (estado in ('PENDIENTE','EN_CURSO','COMPLETADA','FALLIDA')),
+    error varchar(1000),
+    primary key (id)
+);
+
+-- Mismos nombres que les daba Hibernate, para no duplicarlas en bases de datos existentes
+alter table imagen add constraint if not exists FKimrycmhlrxo3mct9129vhslet foreign key (paciente_id) references paciente on delete cascade;
+alter table informe add constraint if not exists FK6eiijurdyxky4959wf40p9kiv foreign key (imagen_id) references imagen on delete cascade;
+alter table paciente add constraint if not exists FKdb6ggrau4kxv0xcu8n17bmn9u foreign key (medico_id) references medico on delete cascade;
+alter table tarea_prediccion add constraint if not exists FK8a4y9tytyrw96r3t191io2iym foreign key (informe_id) references informe on delete cascade;
@@ -0,0 +1,10 @@
+-- Índices de las consultas frecuentes, declarados también en las entidades (@Table(indexes = ...)).
+-- Los compuestos siguen el orden de los listados paginados, así que las páginas siguientes se leen
+-- como un rango del índice sin ordenar
+
+create index if not exists idx_imagen_paciente_fecha on imagen (paciente_id, fecha, id);
+create index if not exists idx_imagen_content_hash on imagen (content_hash);
+create index if not exists idx_informe_imagen on informe (imagen_id, id);
+create index if not exists idx_paciente_medico on paciente (medico_id, id);
+create index if not exists idx_tarea_prediccion_informe on tarea_prediccion (informe_id, id);
+create index if not exists idx_tarea_prediccion_estado on tarea_prediccion (estado, siguiente_intento);
@@ -0,0 +1,3 @@
+-- Los resultados de predicción caducados se borran periódicamente por fecha (PrediccionCache.purgar)
+
+create index if not exists idx_prediccion_fecha on prediccion (fecha);
@@ -0,0 +1,5 @@
+-- Los listados de imágenes se paginan por (fecha, id), así que la fecha pasa a ser obligatoria.
+-- Las imágenes que no la tenían toman la fecha de la migración
+
+update imagen set fecha = current_timestamp where fecha is null;
+alter table imagen alter column fecha set not null;
@@ -0,0 +1,5 @@
+-- El cursor de los listados de imágenes lleva la fecha en milisegundos (Calendar no guarda más), así que una fecha
+-- con microsegundos, como las que rellenó V4 con current_timestamp, nunca es igual a la del cursor y la última
+-- fila de cada página se repite en la siguiente. Se dejan todas con precisión de milisegundos
+
+update imagen set fecha = cast(fecha as timestamp(3)) where fecha <> cast(fecha as timestamp(3));
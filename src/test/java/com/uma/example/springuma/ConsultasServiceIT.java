@@ -0,0 +1,149 @@
+package com.uma.example.springuma;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.uma.example.springuma.integration.base.AbstractIntegration;
+import com.uma.example.springuma.model.ExportacionService;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import reactor.core.publisher.Mono;
+
+// Número de sentencias SQL por endpoint de consulta y de exportación. Cada GET debe resolverse con una única sentencia,
+// sin cargas adicionales por cada informe, imagen, paciente o médico relacionado. Las cachés de Hibernate
+// se desactivan para medir las consultas y no los aciertos de caché
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"prediccion.backend=stub", "prediccion.stub.puntuacion=0.8",
+            "prediccion.tareas.intervalo=3600000", "exportacion.lote=2",
+            "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+            "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+public class ConsultasServiceIT extends AbstractIntegration {
+
+    @LocalServerPort
+    private Integer port;
+    private WebTestClient client;
+    private Paciente paciente;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ExportacionService exportacionService;
+
+    @PostConstruct
+    public void init() {
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:"+port)
+                .responseTimeout(Duration.ofMillis(30000)).build();
+
+        Medico medico = new Medico();
+        medico.setDni("11111111X");
+        medico.setEspecialidad("Oncologia");
+        medico.setNombre("Medico");
+        medico.setId(1);
+
+        client.post()
+                .uri("/medico")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(medico), Medico.class)
+                .exchange()
+                .expectStatus().isCreated();
+
+        paciente = new Paciente();
+        paciente.setNombre("Paciente");
+        paciente.setDni("22222222X");
+        paciente.setEdad(40);
+        paciente.setMedico(medico);
+        paciente.setId(1);
+
+        client.post()
+                .uri("/paciente")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(paciente), Paciente.class)
+                .exchange()
+                .expectStatus().isCreated();
+    }
+
+    private long sentencias(String uri) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        client.get().uri(uri)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult();
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    @DisplayName("Cada endpoint de consulta debería ejecutar una única sentencia SQL")
+    public void getEndpoints_shouldRunOneStatementEach() throws Exception {
+        MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+        bodyBuilder.part("image", new ClassPathResource("healthy.png"));
+        bodyBuilder.part("paciente", paciente);
+        client.post().uri("/imagen")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(bodyBuilder.build())
+                .exchange()
+                .expectStatus().isOk();
+
+        for (int i = 0; i < 3; i++) {
+            client.post().uri("/informe")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(Map.of("contenido", "Informe " + i, "imagen", Map.of("id", 1)))
+                    .exchange()
+                    .expectStatus().isCreated();
+        }
+
+        assertEquals(1, sentencias("/informe/1"));
+        assertEquals(1, sentencias("/informe/imagen/1"));
+        assertEquals(1, sentencias("/paciente/1"));
+        assertEquals(1, sentencias("/paciente/medico/1"));
+        assertEquals(1, sentencias("/imagen/paciente/1"));
+        assertEquals(1, sentencias("/imagen/info/1"));
+
+        // Las exportaciones recorren la tabla con una única consulta y escriben una línea por fila
+        assertEquals(1, sentencias("/informe/export"));
+        assertEquals(1, sentencias("/paciente/export"));
+        String informes = client.get().uri("/informe/export")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class).returnResult().getResponseBody();
+        assertEquals(3, informes.lines().count());
+        assertTrue(informes.lines().allMatch(linea -> linea.contains("\"dni\":\"22222222X\"")));
+
+        // Con exportacion.lote=2 la salida se vacía tras la segunda fila y al terminar, no en cada fila
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int[] vaciados = new int[1];
+        exportacionService.exportarInformes(new FilterOutputStream(bytes) {
+            @Override
+            public void flush() throws IOException {
+                vaciados[0]++;
+                super.flush();
+            }
+        });
+        assertEquals(2, vaciados[0]);
+        assertEquals(informes, bytes.toString(StandardCharsets.UTF_8));
+    }
+}
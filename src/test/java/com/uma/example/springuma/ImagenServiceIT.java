@@ -4,24 +4,43 @@ import com.uma.example.springuma.integration.base.AbstractIntegration;
 import com.uma.example.springuma.model.Imagen;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
+import com.uma.example.springuma.model.BlobStore;
 import com.uma.example.springuma.model.Medico;
 import com.uma.example.springuma.model.Paciente;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.reactive.function.BodyInserters;
 
 
+import javax.imageio.ImageIO;
+
 import jakarta.annotation.PostConstruct;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
 //Realizado por Alba de la Torre Segato y Jonatan Thorpe
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -34,6 +53,9 @@ public class ImagenServiceIT extends AbstractIntegration{
 
     private Medico medico;
     private Paciente paciente;
+
+    @Autowired
+    private BlobStore blobStore;
     @PostConstruct
     public void init() {
         client = WebTestClient.bindToServer().baseUrl("http://localhost:"+port)
@@ -175,4 +197,391 @@ public class ImagenServiceIT extends AbstractIntegration{
                     assertTrue(predictionResponse.contains("Cancer (label 1), score: 0.6412607431411743"));
                 });
     }
+
+    @Test
+    @DisplayName("Descargar una imagen debería devolver el contenido original")
+    public void downloadImage_shouldReturnOriginalContent() throws Exception {
+        Resource imageResource = new ClassPathResource("healthy.png");
+        MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+        bodyBuilder.part("image", imageResource);
+        bodyBuilder.part("paciente", paciente);
+
+        client.post().uri("/imagen")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(bodyBuilder.build())
+                .exchange()
+                .expectStatus().isOk();
+
+        byte[] original = imageResource.getContentAsByteArray();
+        client.get().uri("/imagen/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentLength(original.length)
+                .expectBody(byte[].class)
+                .consumeWith(response -> assertArrayEquals(original, response.getResponseBody()));
+    }
+
+    @Test
+    @DisplayName("Descargar un rango de una imagen debería devolver solo esos bytes")
+    public void downloadImage_withRange_shouldReturnPartialContent() throws Exception {
+        Resource imageResource = new ClassPathResource("healthy.png");
+        MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+        bodyBuilder.part("image", imageResource);
+        bodyBuilder.part("paciente", paciente);
+
+        client.post().uri("/imagen")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(bodyBuilder.build())
+                .exchange()
+                .expectStatus().isOk();
+
+        byte[] original = imageResource.getContentAsByteArray();
+        client.get().uri("/imagen/1")
+                .header("Range", "bytes=100-199")
+                .exchange()
+                .expectStatus().isEqualTo(206)
+                .expectHeader().valueEquals("Content-Range", "bytes 100-199/" + original.length)
+                .expectBody(byte[].class)
+                .consumeWith(response -> assertArrayEquals(Arrays.copyOfRange(original, 100, 200), response.getResponseBody()));
+
+        client.get().uri("/imagen/1")
+                .header("Range", "bytes=" + original.length + "-")
+                .exchange()
+                .expectStatus().isEqualTo(416);
+    }
+
+    @Test
+    @DisplayName("Repetir la descarga con la ETag debería devolver 304 sin contenido")
+    public void downloadImage_withIfNoneMatch_shouldReturnNotModified() throws Exception {
+        Resource imageResource = new ClassPathResource("healthy.png");
+        MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+        bodyBuilder.part("image", imageResource);
+        bodyBuilder.part("paciente", paciente);
+
+        client.post().uri("/imagen")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(bodyBuilder.build())
+                .exchange()
+                .expectStatus().isOk();
+
+        String etag = client.get().uri("/imagen/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists("Last-Modified")
+                .expectHeader().cacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable())
+                .returnResult(byte[].class).getResponseHeaders().getETag();
+        assertNotNull(etag);
+        assertFalse(etag.startsWith("W/"));
+
+        client.get().uri("/imagen/1")
+                .header("If-None-Match", etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals("ETag", etag)
+                .expectBody().isEmpty();
+
+        // If-Range con la ETag actual sirve el rango; con otra, la imagen completa
+        client.get().uri("/imagen/1")
+                .header("Range", "bytes=0-9")
+                .header("If-Range", etag)
+                .exchange()
+                .expectStatus().isEqualTo(206);
+
+        client.get().uri("/imagen/1")
+                .header("Range", "bytes=0-9")
+                .header("If-Range", "\"otra\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentLength(imageResource.contentLength());
+    }
+
+    @Test
+    @DisplayName("Descargar una imagen comprimida aceptando deflate debería enviar los bytes guardados sin descomprimir")
+    public void downloadImage_withAcceptEncodingDeflate_shouldReturnStoredBytes() throws Exception {
+        // Un formato desconocido se guarda con DEFLATE
+        byte[] original = new byte[20000];
+        for (int i = 0; i < original.length; i++) {
+            original[i] = (byte) (i % 7);
+        }
+        Resource imageResource = new ByteArrayResource(original) {
+            @Override
+            public String getFilename() {
+                return "scan.bin";
+            }
+        };
+        MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+        bodyBuilder.part("image", imageResource);
+        bodyBuilder.part("paciente", paciente);
+
+        client.post().uri("/imagen")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(bodyBuilder.build())
+                .exchange()
+                .expectStatus().isOk();
+
+        // El conector por defecto descomprime la respuesta por su cuenta; aquí se quieren los bytes tal cual
+        WebTestClient rawClient = WebTestClient.bindToServer(new ReactorClientHttpConnector(HttpClient.create()))
+                .baseUrl("http://localhost:"+port).build();
+        byte[] encoded = rawClient.get().uri("/imagen/1")
+                .header("Accept-Encoding", "gzip, deflate")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("Content-Encoding", "deflate")
+                .expectHeader().values("Vary", vary -> assertTrue(vary.contains("Accept-Encoding")))
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+        assertNotNull(encoded);
+        assertTrue(encoded.length < original.length);
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(encoded))) {
+            assertArrayEquals(original, in.readAllBytes());
+        }
+
+        client.get().uri("/imagen/1")
+                .header("Accept-Encoding", "deflate;q=0")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist("Content-Encoding")
+                .expectHeader().contentLength(original.length)
+                .expectBody(byte[].class)
+                .consumeWith(response -> assertArrayEquals(original, response.getResponseBody()));
+    }
+
+    @Test
+    @DisplayName("Descargar el ZIP de un paciente debería incluir sus imágenes originales")
+    public void downloadZip_shouldContainOriginalImages() throws Exception {
+        Resource png = new ClassPathResource("healthy.png");
+        byte[] original = new byte[20000];
+        for (int i = 0; i < original.length; i++) {
+            original[i] = (byte) (i % 7);
+        }
+        Resource bin = new ByteArrayResource(original) {
+            @Override
+            public String getFilename() {
+                return "scan.bin";
+            }
+        };
+        for (Resource imageResource : List.of(png, bin)) {
+            MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+            bodyBuilder.part("image", imageResource);
+            bodyBuilder.part("paciente", paciente);
+            client.post().uri("/imagen")
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .bodyValue(bodyBuilder.build())
+                    .exchange()
+                    .expectStatus().isOk();
+        }
+
+        byte[] zip = client.get().uri("/paciente/1/imagenes.zip")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/zip")
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+        assertNotNull(zip);
+
+        // ZipInputStream comprueba el CRC y los tamaños de cada entrada al leerla
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entrada = in.getNextEntry();
+            assertEquals("1_healthy.png", entrada.getName());
+            assertEquals(ZipEntry.STORED, entrada.getMethod());
+            assertArrayEquals(png.getContentAsByteArray(), in.readAllBytes());
+
+            entrada = in.getNextEntry();
+            assertEquals("2_scan.bin", entrada.getName());
+            assertEquals(ZipEntry.DEFLATED, entrada.getMethod());
+            assertArrayEquals(original, in.readAllBytes());
+            assertTrue(entrada.getCompressedSize() < original.length);
+
+            assertNull(in.getNextEntry());
+        }
+
+        // ZipFile en cambio lee el directorio central del final del archivo
+        Path archivo = Files.createTempFile("imagenes", ".zip");
+        try {
+            Files.write(archivo, zip);
+            try (ZipFile zipFile = new ZipFile(archivo.toFile())) {
+                assertEquals(2, zipFile.size());
+                assertEquals(original.length, zipFile.getEntry("2_scan.bin").getSize());
+                assertArrayEquals(original, zipFile.getInputStream(zipFile.getEntry("2_scan.bin")).readAllBytes());
+            }
+        } finally {
+            Files.delete(archivo);
+        }
+
+        client.get().uri("/paciente/999/imagenes.zip")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Pedir la miniatura de una imagen debería devolver un JPEG cacheable")
+    public void downloadThumbnail_shouldReturnCacheableJpeg() throws Exception {
+        Resource imageResource = new ClassPathResource("healthy.png");
+        MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+        bodyBuilder.part("image", imageResource);
+        bodyBuilder.part("paciente", paciente);
+
+        client.post().uri("/imagen")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(bodyBuilder.build())
+                .exchange()
+                .expectStatus().isOk();
+
+        client.get().uri("/imagen/1/thumbnail?size=128")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.IMAGE_JPEG)
+                .expectHeader().cacheControl(CacheControl
+                        .maxAge(Duration.ofDays(365)).cachePublic().immutable())
+                .expectBody(byte[].class)
+                .consumeWith(response -> {
+                    try {
+                        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(response.getResponseBody()));
+                        assertNotNull(thumbnail);
+                        assertTrue(thumbnail.getWidth() <= 128);
+                    } catch (IOException e) {
+                        fail(e);
+                    }
+                });
+
+        client.get().uri("/imagen/1/thumbnail?size=77")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Listar las imágenes de un paciente debería devolver solo sus metadatos")
+    public void getImagenesPaciente_shouldReturnMetadataOnly() throws Exception {
+        Resource imageResource = new ClassPathResource("healthy.png");
+        MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+        bodyBuilder.part("image", imageResource);
+        bodyBuilder.part("paciente", paciente);
+
+        client.post().uri("/imagen")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(bodyBuilder.build())
+                .exchange()
+                .expectStatus().isOk();
+
+        client.get().uri("/imagen/paciente/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].nombre").isEqualTo("healthy.png")
+                .jsonPath("$[0].pacienteId").isEqualTo(1)
+                .jsonPath("$[0].size").isEqualTo(imageResource.contentLength())
+                .jsonPath("$[0].contentHash").isNotEmpty()
+                .jsonPath("$[0].file_content").doesNotExist();
+
+        client.get().uri("/imagen/info/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(1)
+                .jsonPath("$.pacienteId").isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Predecir un lote con una imagen inexistente debería informar del error de esa imagen")
+    public void predictLote_withMissingImage_shouldReportItemError() throws Exception {
+        client.post().uri("/imagen/predict")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of(999L))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .consumeWith(response -> {
+                    String body = response.getResponseBody();
+                    assertNotNull(body);
+                    assertTrue(body.startsWith("{\"id\":999,\"error\":"));
+                    assertTrue(body.endsWith("\n"));
+                });
+    }
+
+    @Test
+    @DisplayName("Predecir un lote con un id nulo debería rechazar la petición")
+    public void predictLote_withNullId_shouldReturnBadRequest() throws Exception {
+        client.post().uri("/imagen/predict")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[1, null]")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Borrar una imagen debería conservar el blob mientras otra imagen con el mismo contenido lo use")
+    public void deleteImagen_withSharedContent_shouldDeleteBlobWithLastReference() throws Exception {
+        Resource imageResource = new ClassPathResource("healthy.png");
+        byte[] original = imageResource.getContentAsByteArray();
+        for (int i = 0; i < 2; i++) {
+            MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+            bodyBuilder.part("image", imageResource);
+            bodyBuilder.part("paciente", paciente);
+            client.post().uri("/imagen")
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .bodyValue(bodyBuilder.build())
+                    .exchange()
+                    .expectStatus().isOk();
+        }
+        String hash = new ObjectMapper().readTree(client.get().uri("/imagen/info/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .returnResult().getResponseBody()).get("contentHash").asText();
+
+        client.delete().uri("/imagen/1").exchange().expectStatus().isNoContent();
+        client.get().uri("/imagen/2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(byte[].class)
+                .consumeWith(response -> assertArrayEquals(original, response.getResponseBody()));
+
+        client.delete().uri("/imagen/2").exchange().expectStatus().isNoContent();
+        // El blob puede estar guardado con o sin comprimir según el formato
+        assertFalse(blobStore.exists(hash) || blobStore.exists(hash + "-raw"));
+    }
+
+    @Test
+    @DisplayName("Borrar un paciente debería borrar los blobs y miniaturas de sus imágenes")
+    public void deletePaciente_withImagen_shouldDeleteBlobAndThumbnails() throws Exception {
+        String hash = subirConMiniatura();
+
+        client.delete().uri("/paciente/1").exchange().expectStatus().isOk();
+
+        assertFalse(blobStore.exists(hash) || blobStore.exists(hash + "-raw"));
+        assertFalse(blobStore.exists(hash + "_w128"));
+    }
+
+    @Test
+    @DisplayName("Borrar un médico debería borrar los blobs y miniaturas de las imágenes de sus pacientes")
+    public void deleteMedico_withImagen_shouldDeleteBlobAndThumbnails() throws Exception {
+        String hash = subirConMiniatura();
+
+        client.delete().uri("/medico/1").exchange().expectStatus().isOk();
+
+        assertFalse(blobStore.exists(hash) || blobStore.exists(hash + "-raw"));
+        assertFalse(blobStore.exists(hash + "_w128"));
+    }
+
+    // Sube una imagen del paciente, pide su miniatura para que exista y devuelve el hash de su contenido
+    private String subirConMiniatura() throws Exception {
+        MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+        bodyBuilder.part("image", new ClassPathResource("healthy.png"));
+        bodyBuilder.part("paciente", paciente);
+        client.post().uri("/imagen")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(bodyBuilder.build())
+                .exchange()
+                .expectStatus().isOk();
+        client.get().uri("/imagen/1/thumbnail?size=128").exchange().expectStatus().isOk();
+        String hash = new ObjectMapper().readTree(client.get().uri("/imagen/info/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .returnResult().getResponseBody()).get("contentHash").asText();
+        assertTrue(blobStore.exists(hash) || blobStore.exists(hash + "-raw"));
+        assertTrue(blobStore.exists(hash + "_w128"));
+        return hash;
+    }
 }
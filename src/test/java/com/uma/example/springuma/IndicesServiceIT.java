@@ -0,0 +1,117 @@
+package com.uma.example.springuma;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Calendar;
+import java.util.List;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.uma.example.springuma.integration.base.AbstractIntegration;
+import com.uma.example.springuma.model.EstadoTarea;
+import com.uma.example.springuma.model.RepositoryImagen;
+import com.uma.example.springuma.model.RepositoryInforme;
+import com.uma.example.springuma.model.RepositoryMedico;
+import com.uma.example.springuma.model.RepositoryPaciente;
+import com.uma.example.springuma.model.RepositoryTareaPrediccion;
+import com.uma.example.springuma.utils.ImageCodec;
+
+// Plan de ejecución de las consultas frecuentes sobre el esquema creado por las migraciones de Flyway.
+// Se ejecuta cada método del repositorio, se recoge la SQL que genera Hibernate y se pasa por EXPLAIN:
+// ninguna debe recorrer la tabla entera y los listados paginados por id deben usar su índice compuesto
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.datasource.url=jdbc:h2:mem:indices",
+            "spring.flyway.enabled=true",
+            "spring.jpa.hibernate.ddl-auto=validate",
+            "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.uma.example.springuma.IndicesServiceIT$UltimaConsulta",
+            "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+            "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+            "prediccion.tareas.intervalo=3600000"})
+public class IndicesServiceIT extends AbstractIntegration {
+
+    // Guarda la última SELECT que prepara Hibernate en el hilo actual
+    public static class UltimaConsulta implements StatementInspector {
+
+        private static final ThreadLocal<String> SQL = new ThreadLocal<>();
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.regionMatches(true, 0, "select", 0, 6)) {
+                SQL.set(sql);
+            }
+            return sql;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RepositoryMedico repositoryMedico;
+
+    @Autowired
+    private RepositoryPaciente repositoryPaciente;
+
+    @Autowired
+    private RepositoryImagen repositoryImagen;
+
+    @Autowired
+    private RepositoryInforme repositoryInforme;
+
+    @Autowired
+    private RepositoryTareaPrediccion repositoryTareaPrediccion;
+
+    // EXPLAIN de la consulta que lanza Hibernate al ejecutar la operación; los parámetros se quedan sin valor
+    private String plan(Runnable consulta) {
+        UltimaConsulta.SQL.remove();
+        consulta.run();
+        String sql = UltimaConsulta.SQL.get();
+        assertNotNull(sql);
+        String plan = jdbcTemplate.queryForObject("explain " + sql, String.class);
+        assertFalse(plan.contains("tableScan"), plan);
+        return plan.toUpperCase();
+    }
+
+    private void assertUsa(String indice, String plan) {
+        assertTrue(plan.contains(indice.toUpperCase()), plan);
+    }
+
+    @Test
+    @DisplayName("Las consultas frecuentes deberían usar índices y no recorrer tablas enteras")
+    public void finders_shouldUseIndexes() {
+        Calendar ahora = Calendar.getInstance();
+
+        // Búsquedas por DNI: índice de la restricción unique
+        plan(() -> repositoryMedico.getMedicoByDni("11111111X"));
+        plan(() -> repositoryMedico.findDnisExistentes(List.of("11111111X", "22222222X")));
+        plan(() -> repositoryPaciente.findByDni("22222222X"));
+        plan(() -> repositoryPaciente.findDnisExistentes(List.of("11111111X", "22222222X")));
+
+        assertUsa("idx_paciente_medico",
+            plan(() -> repositoryPaciente.findByMedicoIdAndIdGreaterThanOrderById(1L, 0, Limit.of(50))));
+
+        // Con solo una igualdad sobre la clave ajena H2 prefiere el índice que crea él mismo para ella antes que
+        // el compuesto; en esas consultas basta con que no recorra la tabla
+        plan(() -> repositoryImagen.findInfoByPacienteId(1L, Limit.of(50)));
+        plan(() -> repositoryImagen.findInfoByPacienteIdAfter(1L, ahora, 0, Limit.of(50)));
+        plan(() -> repositoryImagen.findByPacienteIdOrderByFecha(1L));
+        plan(() -> repositoryImagen.findIdsByPacienteId(1L, Limit.of(50)));
+        assertUsa("idx_imagen_content_hash", plan(() -> repositoryImagen.existsByContentHash("hash")));
+        assertUsa("idx_imagen_content_hash", plan(() -> repositoryImagen.existsByContentHashAndCodec("hash", ImageCodec.NONE)));
+
+        assertUsa("idx_informe_imagen",
+            plan(() -> repositoryInforme.findByImagenIdAndIdGreaterThanOrderById(1L, 0, Limit.of(50))));
+
+        plan(() -> repositoryTareaPrediccion.findFirstByInformeIdOrderByIdDesc(1L));
+        assertUsa("idx_tarea_prediccion_estado",
+            plan(() -> repositoryTareaPrediccion.findIdsListas(EstadoTarea.PENDIENTE, ahora, Limit.of(50))));
+    }
+}
@@ -156,4 +156,44 @@ public class InformeServiceIT extends AbstractIntegration {
                 .exchange()
                 .expectStatus().isNoContent();
     }
+
+    @Test
+    public void saveInformeAsync_shouldReturnAcceptedWithEstado() throws Exception {
+        Resource imageResource = new ClassPathResource("healthy.png");
+        MultiValueMap<String, Object> bodyBuilder = new LinkedMultiValueMap<>();
+        bodyBuilder.add("image", imageResource);
+        bodyBuilder.add("paciente", paciente);
+
+        client.post().uri("/imagen")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(bodyBuilder))
+                .exchange()
+                .expectStatus().isOk();
+
+        Informe informe = new Informe();
+        informe.setContenido("El paciente no tiene cancer.");
+        Imagen imagen = new Imagen();
+        imagen.setId(1);
+        informe.setImagen(imagen);
+
+        // El informe se guarda sin esperar a la predicción
+        client.post().uri("/informe?async=true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(informe)
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectHeader().location("/informe/1/estado");
+
+        client.get().uri("/informe/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.contenido").isEqualTo("El paciente no tiene cancer.");
+
+        client.get().uri("/informe/1/estado")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.estado").isNotEmpty();
+    }
 }
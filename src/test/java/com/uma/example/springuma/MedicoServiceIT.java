@@ -3,6 +3,7 @@ import com.uma.example.springuma.integration.base.AbstractIntegration;
 import com.uma.example.springuma.model.Medico;
 import com.uma.example.springuma.model.RepositoryMedico;
 import com.uma.example.springuma.model.MedicoService;
+import com.uma.example.springuma.model.Paciente;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,9 +14,17 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.persistence.EntityManagerFactory;
+
 import java.util.LinkedHashMap;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -35,6 +44,9 @@ public class MedicoServiceIT extends AbstractIntegration {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     private Medico medico;
 
     @BeforeEach
@@ -157,4 +169,67 @@ public class MedicoServiceIT extends AbstractIntegration {
                 .andExpect(jsonPath("$.nombre").value("MedicoName"));
     }
 
+    @Test
+    @DisplayName("Buscar dos veces un médico por dni debería resolverse la segunda vez desde la caché")
+    public void getMedicoByDni_twice_shouldHitCacheUntilDeleted() throws Exception {
+        this.mockMvc.perform(post("/medico")
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(medico)))
+                .andExpect(status().isCreated());
+
+        Paciente paciente = new Paciente();
+        paciente.setDni("22222222X");
+        paciente.setNombre("PacienteName");
+        paciente.setMedico(medico);
+        medico.setId(1);
+        this.mockMvc.perform(post("/paciente")
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(paciente)))
+                .andExpect(status().isCreated());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.mockMvc.perform(get("/medico/dni/11111111X")).andExpect(status().isOk());
+        this.mockMvc.perform(get("/paciente/medico/1")).andExpect(jsonPath("$.length()").value(1));
+        assertTrue(entityManagerFactory.getCache().contains(Paciente.class, 1L));
+        statistics.clear();
+
+        this.mockMvc.perform(get("/medico/dni/11111111X"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nombre").value("MedicoName"));
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        // Al borrar el médico la base de datos borra sus pacientes y las cachés no deben seguir devolviéndolos
+        this.mockMvc.perform(delete("/medico/1")).andExpect(status().isOk());
+        this.mockMvc.perform(get("/medico/dni/11111111X")).andExpect(status().isNotFound());
+        assertFalse(entityManagerFactory.getCache().contains(Paciente.class, 1L));
+        this.mockMvc.perform(get("/paciente/medico/1")).andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("Importar médicos desde NDJSON debería rechazar los que ya existen")
+    public void importMedicos_withNdjson_shouldRejectExisting() throws Exception {
+        this.mockMvc.perform(post("/medico")
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsString(medico)))
+                .andExpect(status().isCreated());
+
+        String ndjson = "{\"dni\":\"11111111X\",\"nombre\":\"Repetido\"}\n"
+                + "{\"dni\":\"22222222X\",\"nombre\":\"Nuevo\",\"especialidad\":\"Radiologo\"}\n"
+                + "{\"dni\":\"33333333X\"\n";
+
+        this.mockMvc.perform(post("/medico/import")
+                .contentType("application/x-ndjson")
+                .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importadas").value(1))
+                .andExpect(jsonPath("$.rechazadas").value(2))
+                .andExpect(jsonPath("$.errores[0].linea").value(3))
+                .andExpect(jsonPath("$.errores[1].dni").value("11111111X"))
+                .andExpect(jsonPath("$.errores[1].error").value("Ya existe"));
+
+        this.mockMvc.perform(get("/medico/dni/22222222X"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.especialidad").value("Radiologo"));
+    }
 }
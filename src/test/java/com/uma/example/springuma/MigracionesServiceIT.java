@@ -0,0 +1,98 @@
+package com.uma.example.springuma;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.uma.example.springuma.integration.base.AbstractIntegration;
+import com.uma.example.springuma.model.ImagenBlobMigration;
+import com.uma.example.springuma.model.ImagenInfo;
+import com.uma.example.springuma.model.ImagenService;
+import com.uma.example.springuma.model.Pagina;
+import com.uma.example.springuma.utils.ImageUtils;
+
+// Migraciones que transforman datos. El contexto arranca con el esquema hasta V3; cada prueba inserta filas
+// como las dejaba esa versión, aplica el resto de migraciones y comprueba el resultado a través de los servicios
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.datasource.url=jdbc:h2:mem:migraciones",
+            "spring.flyway.enabled=true",
+            "spring.flyway.target=3",
+            "spring.jpa.hibernate.ddl-auto=validate",
+            "prediccion.tareas.intervalo=3600000",
+            // Los blobs que deja la migración no deben confundir a las pruebas que comprueban que se borran
+            "imagen.blobstore.path=target/test-blobs-migraciones"})
+public class MigracionesServiceIT extends AbstractIntegration {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ImagenService imagenService;
+
+    @Autowired
+    private ImagenBlobMigration imagenBlobMigration;
+
+    private void migrarHastaElFinal() {
+        Flyway.configure().dataSource(dataSource).load().migrate();
+    }
+
+    @Test
+    @DisplayName("Las imágenes sin fecha deberían poder recorrerse página a página tras rellenarla la migración")
+    public void migrar_withImagenesSinFecha_shouldPageThroughAll() {
+        jdbcTemplate.update("insert into medico (id, dni, nombre) values (1, '11111111X', 'Medico')");
+        jdbcTemplate.update("insert into paciente (id, dni, nombre, edad, medico_id) values (1, '22222222X', 'Paciente', 40, 1)");
+        for (long id = 1; id <= 3; id++) {
+            jdbcTemplate.update("insert into imagen (id, nombre, paciente_id, fecha) values (?, 'imagen', 1, null)", id);
+        }
+
+        migrarHastaElFinal();
+
+        // Con una imagen por página, cada página debe avanzar a la siguiente fila
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        for (int i = 0; i < 5; i++) {
+            Pagina<ImagenInfo> pagina = imagenService.getImagenesPaciente(1L, cursor, 1);
+            pagina.items().forEach(imagen -> ids.add(imagen.id()));
+            cursor = pagina.nextCursor();
+            if (cursor == null) {
+                break;
+            }
+        }
+        assertEquals(List.of(1L, 2L, 3L), ids);
+    }
+
+    @Test
+    @DisplayName("Las imágenes de la antigua columna file_content deberían pasar al BlobStore y la columna desaparecer")
+    public void migrar_withImagenEnColumnaAntigua_shouldMoveItToBlobStore() throws Exception {
+        byte[] original = new ClassPathResource("healthy.png").getContentAsByteArray();
+        migrarHastaElFinal();
+        jdbcTemplate.execute("alter table imagen add column file_content blob");
+        jdbcTemplate.update("insert into medico (id, dni, nombre) values (1, '11111111X', 'Medico')");
+        jdbcTemplate.update("insert into paciente (id, dni, nombre, edad, medico_id) values (1, '22222222X', 'Paciente', 40, 1)");
+        jdbcTemplate.update("insert into imagen (id, nombre, paciente_id, fecha, file_content) values (1, 'imagen', 1, current_timestamp(3), ?)",
+            (Object) ImageUtils.compressImage(original));
+
+        // Es lo que se ejecuta al arrancar, antes de aceptar peticiones
+        imagenBlobMigration.afterSingletonsInstantiated();
+
+        assertArrayEquals(original, imagenService.getImageContent(1L));
+        assertEquals(0L, jdbcTemplate.queryForObject(
+            "select count(*) from information_schema.columns where upper(table_name) = 'IMAGEN' and upper(column_name) = 'FILE_CONTENT'",
+            Long.class));
+    }
+}
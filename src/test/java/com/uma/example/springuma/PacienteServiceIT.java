@@ -3,6 +3,12 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.uma.example.springuma.integration.base.AbstractIntegration;
 import com.uma.example.springuma.model.Medico;
 import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.PacienteService;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,12 +19,17 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -34,6 +45,12 @@ public class PacienteServiceIT  extends AbstractIntegration {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private PacienteService pacienteService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     private Paciente paciente;
     private Medico medico;
 
@@ -144,4 +161,81 @@ public class PacienteServiceIT  extends AbstractIntegration {
                 .andExpect(jsonPath("$.medico.dni").value(medico.getDni()));
     }
 
+    @Test
+    @DisplayName("Listar los pacientes de un médico por páginas debería devolver el cursor de la siguiente")
+    public void getPacientesMedico_withPageSize_shouldReturnNextCursor() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            paciente.setId(0);
+            paciente.setDni("1234567" + i + "L");
+            this.mockMvc.perform(post("/paciente")
+                            .contentType("application/json")
+                            .content(objectMapper.writeValueAsString(paciente)))
+                    .andExpect(status().isCreated());
+        }
+
+        String link = this.mockMvc.perform(get("/paciente/medico/1").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].dni").value("12345670L"))
+                .andExpect(header().string("Link", containsString("rel=\"next\"")))
+                .andReturn().getResponse().getHeader("Link");
+
+        String next = link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+        this.mockMvc.perform(get(URI.create(next)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].dni").value("12345672L"))
+                .andExpect(header().doesNotExist("Link"));
+
+        this.mockMvc.perform(get("/paciente/medico/1").param("cursor", "no-valido"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Dar de alta pacientes en bloque debería insertarlos por lotes")
+    public void addPacientes_shouldInsertInBatches() {
+        List<Paciente> pacientes = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Paciente nuevo = new Paciente();
+            nuevo.setNombre("Paciente" + i);
+            nuevo.setDni("DNI" + i);
+            nuevo.setMedico(medico);
+            pacientes.add(nuevo);
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        pacienteService.addPacientes(pacientes);
+
+        // Una sentencia para reservar los ids y otra para el INSERT por lotes
+        assertEquals(30, statistics.getEntityInsertCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Importar pacientes desde CSV debería guardar las filas válidas e informar de las rechazadas")
+    public void importPacientes_withCsv_shouldReportRejectedRows() throws Exception {
+        String csv = "dni,nombre,edad,cita,medico\n"
+                + "P1,Ana,30,Lunes,11111111X\n"
+                + "P2,Luis,abc,Martes,11111111X\n"
+                + "P3,,40,Martes,11111111X\n"
+                + "P4,Eva,50,Miercoles,00000000Z\n"
+                + "P1,Ana,30,Lunes,11111111X\n"
+                + "P5,\"Perez, Juan\",61,Jueves,11111111X\n";
+
+        this.mockMvc.perform(post("/paciente/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.filas").value(6))
+                .andExpect(jsonPath("$.importadas").value(2))
+                .andExpect(jsonPath("$.rechazadas").value(4))
+                .andExpect(jsonPath("$.errores[*].linea", contains(3, 4, 5, 6)))
+                .andExpect(jsonPath("$.errores[2].error").value("No existe ningún médico con DNI 00000000Z"))
+                .andExpect(jsonPath("$.errores[3].error").value("DNI repetido en el fichero"));
+
+        this.mockMvc.perform(get("/paciente/medico/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].nombre", contains("Ana", "Perez, Juan")));
+    }
 }
@@ -0,0 +1,269 @@
+package com.uma.example.springuma;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.uma.example.springuma.integration.base.AbstractIntegration;
+import com.uma.example.springuma.model.EstadoTarea;
+import com.uma.example.springuma.model.Imagen;
+import com.uma.example.springuma.model.Informe;
+import com.uma.example.springuma.model.Medico;
+import com.uma.example.springuma.model.Paciente;
+import com.uma.example.springuma.model.Prediccion;
+import com.uma.example.springuma.model.PrediccionCache;
+import com.uma.example.springuma.model.PreprocesadorImagen;
+import com.uma.example.springuma.model.RepositoryPrediccion;
+import com.uma.example.springuma.model.RepositoryTareaPrediccion;
+import com.uma.example.springuma.model.TareaPrediccion;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import reactor.core.publisher.Mono;
+
+// Pruebas de predicción con el backend stub, que no depende del modelo remoto
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"prediccion.backend=stub", "prediccion.stub.puntuacion=0.8", "prediccion.stub.latencia=PT0.5S",
+            "prediccion.preprocesado.enabled=true", "prediccion.limite.inicial=1", "prediccion.limite.maximo=1",
+            "prediccion.lote.cola=2"})
+public class PrediccionServiceIT extends AbstractIntegration {
+
+    @LocalServerPort
+    private Integer port;
+    private WebTestClient client;
+    private Paciente paciente;
+
+    @Autowired
+    private PrediccionCache prediccionCache;
+
+    @Autowired
+    private RepositoryPrediccion repositoryPrediccion;
+
+    @Autowired
+    private RepositoryTareaPrediccion repositoryTareaPrediccion;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PreprocesadorImagen preprocesadorImagen;
+
+    @PostConstruct
+    public void init() {
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:"+port)
+                .responseTimeout(Duration.ofMillis(30000)).build();
+
+        Medico medico = new Medico();
+        medico.setDni("11111111X");
+        medico.setEspecialidad("Oncologia");
+        medico.setNombre("Medico");
+        medico.setId(1);
+
+        client.post()
+                .uri("/medico")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(medico), Medico.class)
+                .exchange()
+                .expectStatus().isCreated();
+
+        paciente = new Paciente();
+        paciente.setNombre("Paciente");
+        paciente.setDni("22222222X");
+        paciente.setEdad(40);
+        paciente.setMedico(medico);
+        paciente.setId(1);
+
+        client.post()
+                .uri("/paciente")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(paciente), Paciente.class)
+                .exchange()
+                .expectStatus().isCreated();
+    }
+
+    private void uploadImage(String nombre) {
+        Resource imageResource = new ClassPathResource(nombre);
+        MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+        bodyBuilder.part("image", imageResource);
+        bodyBuilder.part("paciente", paciente);
+
+        client.post().uri("/imagen")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(bodyBuilder.build())
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    @DisplayName("Predecir una imagen con el backend stub debería devolver la puntuación configurada")
+    public void predictImage_withStubBackend_shouldReturnConfiguredScore() {
+        uploadImage("no_healthy.png");
+
+        client.get().uri("/imagen/predict/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .consumeWith(response -> assertEquals("{\"prediction\": \"Cancer (label 1), score: 0.8\"}", response.getResponseBody()));
+    }
+
+    @Test
+    @DisplayName("Un lote con más imágenes que el límite de concurrencia debería esperar turno en lugar de fallar")
+    public void predictLote_withLimitBelowBatch_shouldWaitForPermit() {
+        uploadImage("healthy.png");
+        uploadImage("no_healthy.png");
+
+        // Con el límite en 1 y el stub tardando 0.5 s, la segunda imagen encuentra ocupado el único hueco
+        String body = client.post().uri("/imagen/predict")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of(1L, 2L))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .returnResult().getResponseBody();
+
+        List<String> lineas = body.lines().toList();
+        assertEquals(2, lineas.size());
+        lineas.forEach(linea -> assertTrue(linea.contains("\"prediction\":\"Cancer (label 1), score: 0.8\""), linea));
+    }
+
+    @Test
+    @DisplayName("Un lote que no cabe en la cola debería rechazarse antes de empezar a responder")
+    public void predictLote_withFullQueue_shouldReturnServiceUnavailable() {
+        client.post().uri("/imagen/predict")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(List.of(1L, 2L, 3L))
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectHeader().exists("Retry-After");
+    }
+
+    @Test
+    @DisplayName("Dos predicciones simultáneas de la misma imagen deberían llamar al modelo una sola vez")
+    public void predictImage_concurrently_shouldCoalesce() {
+        uploadImage("no_healthy.png");
+
+        // El stub tarda 0.5 s, así que la segunda petición llega con la primera todavía en curso
+        CountDownLatch salida = new CountDownLatch(1);
+        List<CompletableFuture<String>> respuestas = List.of(1, 2).stream()
+                .map(i -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        salida.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return client.get().uri("/imagen/predict/1")
+                            .exchange()
+                            .expectStatus().isOk()
+                            .expectBody(String.class)
+                            .returnResult().getResponseBody();
+                }))
+                .toList();
+        salida.countDown();
+
+        for (CompletableFuture<String> respuesta : respuestas) {
+            assertEquals("{\"prediction\": \"Cancer (label 1), score: 0.8\"}", respuesta.join());
+        }
+        assertEquals(1.0, meterRegistry.counter("prediccion.coalescidas").count());
+    }
+
+    @Test
+    @DisplayName("Preprocesar una imagen debería devolver un PNG RGB de 224x224 y guardarlo en caché")
+    public void preprocesar_shouldReturnScaledRgbPngAndCacheIt() throws Exception {
+        byte[] original = new ClassPathResource("healthy.png").getContentAsByteArray();
+        AtomicInteger lecturas = new AtomicInteger();
+
+        byte[] preprocesada = preprocesadorImagen.preprocesar("hash", () -> {
+            lecturas.incrementAndGet();
+            return original;
+        });
+
+        assertArrayEquals(new byte[] {(byte) 0x89, 'P', 'N', 'G'}, Arrays.copyOf(preprocesada, 4));
+        BufferedImage imagen = ImageIO.read(new ByteArrayInputStream(preprocesada));
+        assertEquals(224, imagen.getWidth());
+        assertEquals(224, imagen.getHeight());
+        assertEquals(3, imagen.getColorModel().getNumComponents());
+        assertFalse(imagen.getColorModel().hasAlpha());
+
+        // La segunda vez sale de la caché sin leer la original
+        assertArrayEquals(preprocesada, preprocesadorImagen.preprocesar("hash", () -> {
+            lecturas.incrementAndGet();
+            return original;
+        }));
+        assertEquals(1, lecturas.get());
+    }
+
+    @Test
+    @DisplayName("Purgar la caché de predicciones debería borrar de la tabla solo los resultados caducados")
+    public void purgarCache_shouldDeleteExpiredPredictions() {
+        Calendar antigua = Calendar.getInstance();
+        antigua.add(Calendar.DAY_OF_MONTH, -2);
+        repositoryPrediccion.save(new Prediccion("stub:antigua", "resultado", antigua));
+        repositoryPrediccion.save(new Prediccion("stub:reciente", "resultado", Calendar.getInstance()));
+
+        prediccionCache.purgar();
+
+        assertFalse(repositoryPrediccion.existsById("stub:antigua"));
+        assertTrue(repositoryPrediccion.existsById("stub:reciente"));
+    }
+
+    @Test
+    @DisplayName("Una tarea en curso cuya reserva ha caducado debería volver a procesarse")
+    public void procesarTareas_withExpiredLease_shouldRetakeTask() throws Exception {
+        uploadImage("no_healthy.png");
+        Informe informe = new Informe();
+        informe.setContenido("Informe");
+        Imagen imagen = new Imagen();
+        imagen.setId(1);
+        informe.setImagen(imagen);
+        client.post().uri("/informe?async=true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(informe)
+                .exchange()
+                .expectStatus().isAccepted();
+        TareaPrediccion tarea = esperarEstado(EstadoTarea.COMPLETADA);
+
+        // Como si el trabajador que la tenía reservada hubiera caído a mitad
+        Calendar caducada = Calendar.getInstance();
+        caducada.add(Calendar.MINUTE, -1);
+        tarea.setEstado(EstadoTarea.EN_CURSO);
+        tarea.setSiguienteIntento(caducada);
+        repositoryTareaPrediccion.save(tarea);
+
+        esperarEstado(EstadoTarea.COMPLETADA);
+    }
+
+    private TareaPrediccion esperarEstado(EstadoTarea estado) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            TareaPrediccion tarea = repositoryTareaPrediccion.findFirstByInformeIdOrderByIdDesc(1L);
+            if (tarea != null && tarea.getEstado() == estado) {
+                return tarea;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("La tarea no ha llegado a " + estado);
+    }
+}
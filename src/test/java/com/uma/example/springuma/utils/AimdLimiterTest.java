@@ -0,0 +1,109 @@
+package com.uma.example.springuma.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class AimdLimiterTest {
+
+    private static final long RAPIDA = Duration.ofMillis(10).toNanos();
+    private static final long LENTA = Duration.ofSeconds(2).toNanos();
+
+    private static AimdLimiter limiter(int inicial) {
+        return new AimdLimiter(inicial, 1, 6, Duration.ofSeconds(1));
+    }
+
+    private static void ocupar(AimdLimiter limiter, int llamadas) {
+        for (int i = 0; i < llamadas; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+    }
+
+    @Test
+    @DisplayName("No debería admitir más llamadas concurrentes que el límite")
+    public void tryAcquire_atLimit_shouldReject() {
+        AimdLimiter limiter = limiter(4);
+        ocupar(limiter, 4);
+
+        assertFalse(limiter.tryAcquire());
+        assertEquals(4, limiter.getEnCurso());
+    }
+
+    @Test
+    @DisplayName("Con el límite lleno, acquire debería esperar a que termine otra llamada")
+    public void acquire_atLimit_shouldWaitForRelease() throws Exception {
+        AimdLimiter limiter = limiter(1);
+        ocupar(limiter, 1);
+        Thread liberador = new Thread(() -> {
+            esperar(Duration.ofMillis(100));
+            limiter.release(RAPIDA, true);
+        });
+        liberador.start();
+
+        assertTrue(limiter.acquire(Duration.ofSeconds(5)));
+        assertEquals(1, limiter.getEnCurso());
+        liberador.join();
+    }
+
+    @Test
+    @DisplayName("Con el límite lleno, acquire debería rendirse pasado el tiempo de espera")
+    public void acquire_atLimit_shouldTimeOut() throws Exception {
+        AimdLimiter limiter = limiter(1);
+        ocupar(limiter, 1);
+
+        assertFalse(limiter.acquire(Duration.ofMillis(50)));
+        assertEquals(1, limiter.getEnCurso());
+    }
+
+    @Test
+    @DisplayName("Las llamadas rápidas con carga cerca del límite deberían subirlo de uno en uno hasta el máximo")
+    public void release_withFastCallsNearLimit_shouldIncreaseAdditively() {
+        AimdLimiter limiter = limiter(5);
+        ocupar(limiter, 5);
+
+        limiter.release(RAPIDA, true);
+        assertEquals(6, limiter.getLimite());
+        limiter.release(RAPIDA, true);
+        assertEquals(6, limiter.getLimite());
+        assertEquals(3, limiter.getEnCurso());
+    }
+
+    @Test
+    @DisplayName("Las llamadas rápidas con poca carga no deberían subir el límite")
+    public void release_withLowLoad_shouldKeepLimit() {
+        AimdLimiter limiter = limiter(6);
+        ocupar(limiter, 1);
+
+        limiter.release(RAPIDA, true);
+
+        assertEquals(6, limiter.getLimite());
+    }
+
+    @Test
+    @DisplayName("Un fallo o una llamada lenta deberían reducir el límite a la mitad sin bajar del mínimo")
+    public void release_withFailureOrSlowCall_shouldHalveLimit() {
+        AimdLimiter limiter = limiter(6);
+        ocupar(limiter, 3);
+
+        limiter.release(RAPIDA, false);
+        assertEquals(3, limiter.getLimite());
+        limiter.release(LENTA, true);
+        assertEquals(1, limiter.getLimite());
+        limiter.release(RAPIDA, false);
+        assertEquals(1, limiter.getLimite());
+        assertEquals(0, limiter.getEnCurso());
+    }
+
+    private static void esperar(Duration tiempo) {
+        try {
+            Thread.sleep(tiempo.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
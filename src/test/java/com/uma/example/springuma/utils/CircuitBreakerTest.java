@@ -0,0 +1,106 @@
+package com.uma.example.springuma.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTest {
+
+    // Con espera cero el cortocircuito pasa a semiabierto en cuanto se pide la siguiente llamada
+    private static CircuitBreaker abierto(Duration espera) {
+        CircuitBreaker circuito = new CircuitBreaker(2, espera);
+        for (int i = 0; i < 2; i++) {
+            assertTrue(circuito.tryAcquire());
+            circuito.onFailure();
+        }
+        assertEquals(CircuitBreaker.Estado.ABIERTO, circuito.getEstado());
+        return circuito;
+    }
+
+    @Test
+    @DisplayName("Tras maxFallos fallos seguidos debería abrirse y rechazar las llamadas")
+    public void onFailure_withMaxFallos_shouldOpen() {
+        CircuitBreaker circuito = abierto(Duration.ofHours(1));
+
+        assertFalse(circuito.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("Un éxito entre fallos debería reiniciar la cuenta de fallos seguidos")
+    public void onSuccess_whenClosed_shouldResetFailures() {
+        CircuitBreaker circuito = new CircuitBreaker(2, Duration.ofHours(1));
+        circuito.tryAcquire();
+        circuito.onFailure();
+        circuito.tryAcquire();
+        circuito.onSuccess();
+        circuito.tryAcquire();
+        circuito.onFailure();
+
+        assertEquals(CircuitBreaker.Estado.CERRADO, circuito.getEstado());
+    }
+
+    @Test
+    @DisplayName("Pasada la espera debería dejar pasar una sola llamada de prueba")
+    public void tryAcquire_afterEspera_shouldAllowOneProbe() {
+        CircuitBreaker circuito = abierto(Duration.ZERO);
+
+        assertTrue(circuito.tryAcquire());
+        assertEquals(CircuitBreaker.Estado.SEMIABIERTO, circuito.getEstado());
+        assertFalse(circuito.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("Si la llamada de prueba sale bien debería cerrarse")
+    public void onSuccess_withProbe_shouldClose() {
+        CircuitBreaker circuito = abierto(Duration.ZERO);
+        circuito.tryAcquire();
+
+        circuito.onSuccess();
+
+        assertEquals(CircuitBreaker.Estado.CERRADO, circuito.getEstado());
+        assertTrue(circuito.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("Si la llamada de prueba falla debería volver a abrirse")
+    public void onFailure_withProbe_shouldReopen() {
+        CircuitBreaker circuito = abierto(Duration.ofMillis(200));
+        esperar(Duration.ofMillis(250));
+        assertTrue(circuito.tryAcquire());
+
+        circuito.onFailure();
+
+        assertEquals(CircuitBreaker.Estado.ABIERTO, circuito.getEstado());
+        assertFalse(circuito.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("Una llamada lenta que termina bien con el cortocircuito abierto no debería cerrarlo")
+    public void onSuccess_whenOpen_shouldStayOpen() {
+        CircuitBreaker circuito = new CircuitBreaker(2, Duration.ofHours(1));
+        assertTrue(circuito.tryAcquire());
+        for (int i = 0; i < 2; i++) {
+            assertTrue(circuito.tryAcquire());
+            circuito.onFailure();
+        }
+
+        // Termina la primera llamada, admitida cuando aún estaba cerrado
+        circuito.onSuccess();
+
+        assertEquals(CircuitBreaker.Estado.ABIERTO, circuito.getEstado());
+        assertFalse(circuito.tryAcquire());
+    }
+
+    private static void esperar(Duration tiempo) {
+        try {
+            Thread.sleep(tiempo.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}